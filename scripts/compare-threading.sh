@@ -0,0 +1,48 @@
+#!/usr/bin/env bash
+# Puts the same load on the app running on platform threads and on virtual threads, and prints each run's
+# throughput and latency summary. Needs curl and hey (https://github.com/rakyll/hey).
+#
+# Usage: compare-threading.sh <jar> [concurrency] [duration]
+#
+# Both runs use the test profile's in-memory database, with rate limiting and the user DTO cache turned off so
+# every request reaches the database.
+set -euo pipefail
+
+JAR=$1
+CONCURRENCY=${2:-500}
+DURATION=${3:-30s}
+PORT=${COMPARE_THREADING_PORT:-18080}
+BASE="http://localhost:$PORT"
+
+run() {
+    local label=$1
+    local virtual=$2
+    
+    java -jar "$JAR" --server.port="$PORT" --spring.profiles.active=test \
+        --spring.threads.virtual.enabled="$virtual" \
+        --rate-limit.enabled=false --user.dto-cache.maximum-size=0 > /dev/null 2>&1 &
+    local pid=$!
+    
+    until curl -s -o /dev/null "$BASE/actuator/health"; do
+        kill -0 "$pid" 2> /dev/null || { echo "$label: exited during startup" >&2; return 1; }
+        sleep 0.2
+    done
+    
+    local token
+    token=$(curl -s -X POST "$BASE/auth/register" -H 'Content-Type: application/json' \
+        -d '{"name": "Load", "email": "load@test.com", "password": "loadtest"}' \
+        | sed -E 's/.*"token":"([^"]+)".*/\1/')
+    
+    # Warm up the JIT before measuring
+    hey -z 10s -c "$CONCURRENCY" -H "Authorization: Bearer $token" "$BASE/users/me" > /dev/null
+    
+    echo "== $label =="
+    hey -z "$DURATION" -c "$CONCURRENCY" -H "Authorization: Bearer $token" "$BASE/users/me" \
+        | sed -n '/Summary:/,/Latency distribution:/p;/Status code distribution:/,$p'
+    
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+}
+
+run "Platform threads" false
+run "Virtual threads" true
@@ -0,0 +1,66 @@
+#!/usr/bin/env bash
+# Prints how long the app takes to answer its first HTTP request, started normally and started with the
+# AOT-processed classes plus the CDS archive built by the fast-startup Maven profile.
+#
+# Usage: measure-startup.sh <java> <jar> <extracted application dir> [profiles]
+#
+# Both runs use the profiles the AOT build was made for (prod by default) with an in-memory database and a
+# throwaway JWT secret, so nothing on disk is migrated. Needs curl and a free port, STARTUP_MEASURE_PORT
+# (18080 by default).
+set -euo pipefail
+
+JAVA=$1
+JAR=$2
+EXTRACTED=$3
+PROFILES=${4:-prod}
+PORT=${STARTUP_MEASURE_PORT:-18080}
+
+if ! command -v curl > /dev/null; then
+    echo "measure-startup.sh needs curl; skip the measurement with -Dstartup.measure.skip=true" >&2
+    exit 1
+fi
+if curl -s -o /dev/null "http://localhost:$PORT/"; then
+    echo "Port $PORT is in use; pick another with -Dstartup.measure.port or skip with -Dstartup.measure.skip=true" >&2
+    exit 1
+fi
+
+# EPOCHREALTIME needs bash 5; BSD date has no %N
+millis() {
+    if [[ -n ${EPOCHREALTIME:-} ]]; then
+        local now=${EPOCHREALTIME/[.,]/}
+        echo $((now / 1000))
+    else
+        python3 -c 'import time; print(int(time.time() * 1000))'
+    fi
+}
+
+measure() {
+    local label=$1
+    shift
+    
+    local start
+    start=$(millis)
+    "$@" --server.port="$PORT" --spring.profiles.active="$PROFILES" \
+        --spring.datasource.url=jdbc:h2:mem:startup-measure --jwt.secret=startup_measure_only_secret_key_not_for_use \
+        > /dev/null 2>&1 &
+    local pid=$!
+    
+    # Any HTTP response counts; curl only fails while nothing is listening yet
+    until curl -s -o /dev/null "http://localhost:$PORT/actuator/health"; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "$label: exited before serving a request" >&2
+            return 1
+        fi
+        sleep 0.05
+    done
+    local end
+    end=$(millis)
+    
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    echo "$label: first request answered after $((end - start)) ms"
+}
+
+measure "Plain jar" "$JAVA" -jar "$JAR"
+measure "AOT + CDS" "$JAVA" -XX:SharedArchiveFile="$EXTRACTED/application.jsa" -Dspring.aot.enabled=true \
+    -jar "$EXTRACTED/$(basename "$JAR")"
@@ -5,8 +5,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Map;
-
 @RestController
 @RequestMapping("/auth")
 @Validated
@@ -18,15 +16,24 @@ public class AuthController {
     }
     
     @PostMapping("/login")
-    public ResponseEntity<Map<String, String>> login(@RequestBody @Validated AuthRequest request) {
-        String token = service.authenticate(request);
-        return ResponseEntity.ok(Map.of("token", token));
+    public ResponseEntity<AuthTokens> login(@RequestBody @Validated AuthRequest request) {
+        return ResponseEntity.ok(service.authenticate(request));
     }
     
     @PostMapping("/register")
-    public ResponseEntity<Map<String, String>> register(@RequestBody @Validated RegisterRequest request) {
-        String token = service.register(request);
+    public ResponseEntity<AuthTokens> register(@RequestBody @Validated RegisterRequest request) {
         return ResponseEntity.status(HttpStatus.CREATED)
-            .body(Map.of("token", token));
+            .body(service.register(request));
+    }
+    
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthTokens> refresh(@RequestBody @Validated RefreshRequest request) {
+        return ResponseEntity.ok(service.refresh(request));
+    }
+    
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody @Validated RefreshRequest request) {
+        service.logout(request);
+        return ResponseEntity.noContent().build();
     }
 }
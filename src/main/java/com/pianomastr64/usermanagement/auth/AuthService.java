@@ -1,10 +1,13 @@
 package com.pianomastr64.usermanagement.auth;
 
+import com.pianomastr64.usermanagement.datasource.ReadYourWrites;
 import com.pianomastr64.usermanagement.exception.DuplicateEmailException;
+import com.pianomastr64.usermanagement.user.KnownEmails;
+import com.pianomastr64.usermanagement.user.UserDtoCache;
+import com.pianomastr64.usermanagement.user.UserSearchIndex;
 import com.pianomastr64.usermanagement.user.UserMapper;
 import com.pianomastr64.usermanagement.user.User;
 import com.pianomastr64.usermanagement.user.UserRepository;
-import com.pianomastr64.usermanagement.security.JwtUtil;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -14,34 +17,73 @@ public class AuthService {
     private final UserRepository repo;
     private final UserMapper mapper;
     private final PasswordEncoder passwordEncoder;
-    private final JwtUtil jwtUtil;
+    private final SessionService sessionService;
+    private final KnownEmails knownEmails;
+    private final UserSearchIndex searchIndex;
+    private final UserDtoCache dtoCache;
+    private final ReadYourWrites readYourWrites;
     
-    public AuthService(UserRepository repo, UserMapper mapper, PasswordEncoder passwordEncoder, JwtUtil jwtUtil) {
+    public AuthService(
+        UserRepository repo,
+        UserMapper mapper,
+        PasswordEncoder passwordEncoder,
+        SessionService sessionService,
+        KnownEmails knownEmails,
+        UserSearchIndex searchIndex,
+        UserDtoCache dtoCache,
+        ReadYourWrites readYourWrites
+    ) {
         this.repo = repo;
         this.mapper = mapper;
         this.passwordEncoder = passwordEncoder;
-        this.jwtUtil = jwtUtil;
+        this.sessionService = sessionService;
+        this.knownEmails = knownEmails;
+        this.searchIndex = searchIndex;
+        this.dtoCache = dtoCache;
+        this.readYourWrites = readYourWrites;
     }
     
-    public String authenticate(AuthRequest request) {
-        User user = repo.findByEmail(request.email())
+    public AuthTokens authenticate(AuthRequest request) {
+        // Credentials are checked against the primary, never a replica or the entity cache,
+        // either of which may not have a password change yet
+        User user = readYourWrites.onPrimary(() -> repo.findCredentialsByEmail(request.email()))
             .orElseThrow(() -> new BadCredentialsException("Invalid email"));
         
         if (!passwordEncoder.matches(request.password(), user.getPasswordHash())) {
             throw new BadCredentialsException("Invalid password");
         }
         
-        return jwtUtil.generateToken(user.getId());
+        // Move hashes made with an older strength to the current one while we have the raw password
+        if (passwordEncoder.upgradeEncoding(user.getPasswordHash())) {
+            user.setPasswordHash(passwordEncoder.encode(request.password()));
+            repo.save(user);
+            readYourWrites.recordWrite(user.getId());
+            // The version, and so the ETag, has moved on
+            dtoCache.invalidate(user.getId());
+        }
+        
+        return sessionService.open(user);
     }
     
-    public String register(RegisterRequest request) {
-        if (repo.existsByEmail(request.email())) {
+    public AuthTokens register(RegisterRequest request) {
+        if (knownEmails.isTaken(request.email())) {
             throw new DuplicateEmailException("Email already registered");
         }
         
         User user = mapper.createFromDto(request, passwordEncoder);
         repo.save(user);
+        readYourWrites.recordWrite(user.getId());
+        knownEmails.add(user.getEmail());
+        searchIndex.put(user.getId(), user.getName(), user.getEmail());
 
-        return jwtUtil.generateToken(user.getId());
+        return sessionService.open(user);
+    }
+    
+    public AuthTokens refresh(RefreshRequest request) {
+        return sessionService.refresh(request.refreshToken());
+    }
+    
+    public void logout(RefreshRequest request) {
+        sessionService.close(request.refreshToken());
     }
 }
@@ -0,0 +1,3 @@
+package com.pianomastr64.usermanagement.auth;
+
+public record AuthTokens(String token, String refreshToken) {}
@@ -0,0 +1,8 @@
+package com.pianomastr64.usermanagement.auth;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record RefreshRequest(
+    @NotBlank
+    String refreshToken
+) {}
@@ -0,0 +1,62 @@
+package com.pianomastr64.usermanagement.auth;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A login session. Its id is embedded in every access token issued for the session (the {@code sid} claim),
+ * and the refresh token is rotated in place on every refresh, so revoking the row ends the whole session.
+ * Only a SHA-256 hash of the refresh token is stored.
+ */
+@Entity
+@Table(name = "refresh_tokens")
+public class RefreshToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(nullable = false, unique = true, length = 64)
+    private String tokenHash;
+    
+    @Column(nullable = false)
+    private Instant expiresAt;
+    
+    @Column(nullable = false)
+    private boolean revoked;
+    
+    protected RefreshToken() {}
+    
+    public RefreshToken(Long userId, String tokenHash, Instant expiresAt) {
+        this.userId = userId;
+        this.tokenHash = tokenHash;
+        this.expiresAt = expiresAt;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public boolean isRevoked() {
+        return revoked;
+    }
+    
+    public boolean isActive(Instant now) {
+        return !revoked && expiresAt.isAfter(now);
+    }
+    
+    public void revoke() {
+        this.revoked = true;
+    }
+}
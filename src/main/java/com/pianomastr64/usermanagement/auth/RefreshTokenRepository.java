@@ -0,0 +1,52 @@
+package com.pianomastr64.usermanagement.auth;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+    
+    boolean existsByIdAndRevokedTrue(Long id);
+    
+    /**
+     * Revoked sessions whose refresh token hasn't expired yet. Access tokens never outlive their refresh token,
+     * so older revocations don't need to be remembered.
+     */
+    @Query("SELECT t.id FROM RefreshToken t WHERE t.revoked = true AND t.expiresAt > :now")
+    List<Long> findRevokedIdsExpiringAfter(@Param("now") Instant now);
+    
+    /**
+     * Replaces the refresh token of the session holding {@code currentHash}, provided it is still active.
+     * The check and the write are one statement, so of two concurrent refreshes with the same token only one
+     * sees an update count of 1.
+     */
+    @Modifying
+    @Query("""
+        UPDATE RefreshToken t SET t.tokenHash = :rotatedHash, t.expiresAt = :expiresAt
+        WHERE t.tokenHash = :currentHash AND t.revoked = false AND t.expiresAt > :now
+        """)
+    int rotate(
+        @Param("currentHash") String currentHash,
+        @Param("rotatedHash") String rotatedHash,
+        @Param("expiresAt") Instant expiresAt,
+        @Param("now") Instant now
+    );
+    
+    /**
+     * Deletes sessions whose refresh token has expired, revoked or not. Their access tokens have expired too,
+     * so the revocation check no longer needs them.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshToken t WHERE t.expiresAt <= :now")
+    int deleteExpiredBefore(@Param("now") Instant now);
+}
@@ -0,0 +1,38 @@
+package com.pianomastr64.usermanagement.auth;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.revocation")
+public class RevocationProperties {
+    /**
+     * Number of revoked, unexpired sessions the filter is sized for.
+     */
+    private long expectedRevocations = 100_000;
+    
+    /**
+     * Target false-positive rate of the filter. Every false positive costs one database query.
+     */
+    private double falsePositiveRate = 0.01;
+    
+    /**
+     * How often the filter is rebuilt from the database, which drops expired revocations
+     * and picks up ones made by other instances.
+     */
+    private Duration rebuildInterval = Duration.ofMinutes(1);
+    
+    public long getExpectedRevocations() {return expectedRevocations;}
+    
+    public void setExpectedRevocations(long expectedRevocations) {this.expectedRevocations = expectedRevocations;}
+    
+    public double getFalsePositiveRate() {return falsePositiveRate;}
+    
+    public void setFalsePositiveRate(double falsePositiveRate) {this.falsePositiveRate = falsePositiveRate;}
+    
+    public Duration getRebuildInterval() {return rebuildInterval;}
+    
+    public void setRebuildInterval(Duration rebuildInterval) {this.rebuildInterval = rebuildInterval;}
+}
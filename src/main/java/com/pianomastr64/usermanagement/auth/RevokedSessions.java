@@ -0,0 +1,101 @@
+package com.pianomastr64.usermanagement.auth;
+
+import com.pianomastr64.usermanagement.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers "has this session been revoked?" on every authenticated request without a query per request.
+ *
+ * <p>A Bloom filter of revoked session ids is checked first. Only when it reports a possible hit is the
+ * {@code refresh_tokens} table consulted. The filter is rebuilt every {@code security.revocation.rebuild-interval},
+ * which also picks up sessions revoked by other instances.</p>
+ *
+ * <p>Checks are counted in {@code session.revocation.checks}, tagged by outcome.</p>
+ */
+@Component
+public class RevokedSessions {
+    private final RefreshTokenRepository refreshTokens;
+    private final RevocationProperties properties;
+    
+    private volatile BloomFilter filter;
+    // Revocations since the last rebuild, replayed into the next filter in case the rebuild's query missed them
+    private final Set<Long> recentlyRevoked = ConcurrentHashMap.newKeySet();
+    
+    private final Counter negative;
+    private final Counter revoked;
+    private final Counter falsePositive;
+    
+    public RevokedSessions(RefreshTokenRepository refreshTokens, RevocationProperties properties, MeterRegistry registry) {
+        this.refreshTokens = refreshTokens;
+        this.properties = properties;
+        this.filter = newFilter();
+        
+        this.negative = checks(registry, "negative");
+        this.revoked = checks(registry, "revoked");
+        this.falsePositive = checks(registry, "false_positive");
+        Gauge.builder("session.revocation.filter.fpp", this, sessions -> sessions.filter.expectedFalsePositiveRate())
+            .description("Expected false-positive rate of the revoked-session filter")
+            .register(registry);
+    }
+    
+    private static Counter checks(MeterRegistry registry, String result) {
+        return Counter.builder("session.revocation.checks")
+            .tag("result", result)
+            .register(registry);
+    }
+    
+    private BloomFilter newFilter() {
+        return new BloomFilter(properties.getExpectedRevocations(), properties.getFalsePositiveRate());
+    }
+    
+    @PostConstruct
+    void warmUp() {
+        rebuild();
+    }
+    
+    @Scheduled(fixedDelayString = "${security.revocation.rebuild-interval:PT1M}")
+    public void rebuild() {
+        BloomFilter next = newFilter();
+        refreshTokens.findRevokedIdsExpiringAfter(Instant.now())
+            .forEach(id -> next.put(id.toString()));
+        // Replay before publishing, so a session revoked while the filter was built never passes it,
+        // and again after, for any revoked between the replay and the publish
+        recentlyRevoked.forEach(id -> next.put(id.toString()));
+        filter = next;
+        
+        for(Iterator<Long> it = recentlyRevoked.iterator(); it.hasNext(); ) {
+            next.put(it.next().toString());
+            it.remove();
+        }
+    }
+    
+    public void add(Long sessionId) {
+        recentlyRevoked.add(sessionId);
+        filter.put(sessionId.toString());
+    }
+    
+    public boolean isRevoked(Long sessionId) {
+        if(!filter.mightContain(sessionId.toString())) {
+            negative.increment();
+            return false;
+        }
+        
+        if(refreshTokens.existsByIdAndRevokedTrue(sessionId)) {
+            revoked.increment();
+            return true;
+        }
+        
+        falsePositive.increment();
+        return false;
+    }
+}
@@ -0,0 +1,126 @@
+package com.pianomastr64.usermanagement.auth;
+
+import com.pianomastr64.usermanagement.datasource.ReadYourWrites;
+import com.pianomastr64.usermanagement.security.JwtUtil;
+import com.pianomastr64.usermanagement.user.User;
+import com.pianomastr64.usermanagement.user.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Opens, refreshes and closes login sessions. Each session pairs short-lived access tokens with a
+ * refresh token that is rotated on every use.
+ */
+@Service
+public class SessionService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionService.class);
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    private final RefreshTokenRepository refreshTokens;
+    private final UserRepository userRepo;
+    private final RevokedSessions revokedSessions;
+    private final JwtUtil jwtUtil;
+    private final ReadYourWrites readYourWrites;
+    private final Duration refreshTokenTtl;
+    
+    public SessionService(
+        RefreshTokenRepository refreshTokens,
+        UserRepository userRepo,
+        RevokedSessions revokedSessions,
+        JwtUtil jwtUtil,
+        ReadYourWrites readYourWrites,
+        @Value("${jwt.refresh-token-ttl:14d}") Duration refreshTokenTtl
+    ) {
+        this.refreshTokens = refreshTokens;
+        this.userRepo = userRepo;
+        this.revokedSessions = revokedSessions;
+        this.jwtUtil = jwtUtil;
+        this.readYourWrites = readYourWrites;
+        this.refreshTokenTtl = refreshTokenTtl;
+    }
+    
+    public AuthTokens open(User user) {
+        String refreshToken = newRefreshToken();
+        RefreshToken session = refreshTokens.save(
+            new RefreshToken(user.getId(), hash(refreshToken), Instant.now().plus(refreshTokenTtl)));
+        
+        return new AuthTokens(jwtUtil.generateToken(user.getId(), user.getRole(), session.getId()), refreshToken);
+    }
+    
+    /**
+     * Issues a new access token for the session and replaces its refresh token, so each refresh token works once.
+     */
+    @Transactional
+    public AuthTokens refresh(String refreshToken) {
+        RefreshToken session = findActive(refreshToken)
+            .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        User user = userRepo.findById(session.getUserId())
+            .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        
+        // A concurrent refresh with the same token may have rotated it since it was read
+        String rotated = newRefreshToken();
+        Instant now = Instant.now();
+        if(refreshTokens.rotate(hash(refreshToken), hash(rotated), now.plus(refreshTokenTtl), now) != 1) {
+            throw new BadCredentialsException("Invalid refresh token");
+        }
+        readYourWrites.recordWrite(user.getId());
+        
+        return new AuthTokens(jwtUtil.generateToken(user.getId(), user.getRole(), session.getId()), rotated);
+    }
+    
+    /**
+     * Revokes the session, which also invalidates every access token issued for it.
+     * Unknown or already revoked tokens are ignored.
+     */
+    @Transactional
+    public void close(String refreshToken) {
+        findActive(refreshToken).ifPresent(session -> {
+            session.revoke();
+            revokedSessions.add(session.getId());
+        });
+    }
+    
+    @Scheduled(fixedDelayString = "${jwt.refresh-token-purge-interval:PT1H}")
+    public void purgeExpired() {
+        int purged = refreshTokens.deleteExpiredBefore(Instant.now());
+        if(purged > 0) {
+            LOGGER.debug("Purged {} expired sessions", purged);
+        }
+    }
+    
+    private Optional<RefreshToken> findActive(String refreshToken) {
+        Instant now = Instant.now();
+        return refreshTokens.findByTokenHash(hash(refreshToken))
+            .filter(session -> session.isActive(now));
+    }
+    
+    private static String newRefreshToken() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+    
+    private static String hash(String refreshToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(refreshToken.getBytes(StandardCharsets.UTF_8)));
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.pianomastr64.usermanagement.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.pianomastr64.usermanagement.user.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Creates the Hibernate second-level cache region for {@link User} and hands it to Hibernate.
+ *
+ * <p>The region is bounded by {@code entity-cache.maximum-size} and expires after {@code entity-cache.ttl}.
+ * Hibernate keeps it in step with updates and deletes made through this instance, and drops it whole
+ * after a bulk JPQL statement on users. Hit, miss and eviction counts are published as cache metrics
+ * tagged with the region name.</p>
+ */
+@Configuration
+public class EntityCacheConfig {
+    
+    @Bean
+    public CacheManager entityCacheManager(EntityCacheProperties properties, MeterRegistry registry) {
+        // One manager per application context, so contexts in the same JVM don't share regions
+        CacheManager manager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+            .getCacheManager(URI.create("entity-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+        
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(properties.getMaximumSize()));
+        configuration.setExpireAfterWrite(OptionalLong.of(properties.getTtl().toNanos()));
+        configuration.setStatisticsEnabled(true);
+        
+        Cache<Object, Object> cache = manager.createCache(User.CACHE_REGION, configuration);
+        JCacheMetrics.monitor(registry, cache);
+        return manager;
+    }
+    
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheManagerCustomizer(CacheManager entityCacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+    }
+}
@@ -0,0 +1,28 @@
+package com.pianomastr64.usermanagement.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "entity-cache")
+public class EntityCacheProperties {
+    /**
+     * Maximum number of users kept in the second-level cache.
+     */
+    private long maximumSize = 10_000;
+    
+    /**
+     * How long a cached user is trusted. Bounds how stale a user changed by another instance can be.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+    
+    public long getMaximumSize() {return maximumSize;}
+    
+    public void setMaximumSize(long maximumSize) {this.maximumSize = maximumSize;}
+    
+    public Duration getTtl() {return ttl;}
+    
+    public void setTtl(Duration ttl) {this.ttl = ttl;}
+}
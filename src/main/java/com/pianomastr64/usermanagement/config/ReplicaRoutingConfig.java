@@ -0,0 +1,72 @@
+package com.pianomastr64.usermanagement.config;
+
+import com.pianomastr64.usermanagement.datasource.ReadYourWrites;
+import com.pianomastr64.usermanagement.datasource.ReplicaRoutingDataSource;
+import com.pianomastr64.usermanagement.datasource.ReplicaRoutingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the auto-configured datasource with one that routes read-only transactions to read replicas.
+ * Only active with {@code replica-routing.enabled=true}.
+ *
+ * <p>{@code spring.datasource} still describes the primary, which Liquibase migrates.
+ * Each pool's metrics are published under its pool name ({@code primary}, {@code replica-0}, ...).</p>
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "replica-routing", name = "enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+    
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(
+        DataSourceProperties primaryProperties,
+        ReplicaRoutingProperties routingProperties,
+        ReadYourWrites readYourWrites,
+        MeterRegistry registry
+    ) {
+        MicrometerMetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(registry);
+        
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .build();
+        primary.setPoolName("primary");
+        primary.setMetricsTrackerFactory(metrics);
+        
+        List<DataSource> replicas = new ArrayList<>();
+        List<ReplicaRoutingProperties.Replica> replicaProperties = routingProperties.getReplicas();
+        for(int i = 0; i < replicaProperties.size(); i++) {
+            ReplicaRoutingProperties.Replica replica = replicaProperties.get(i);
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + i);
+            pool.setJdbcUrl(replica.getUrl());
+            pool.setUsername(replica.getUsername());
+            pool.setPassword(replica.getPassword());
+            pool.setMaximumPoolSize(replica.getMaximumPoolSize());
+            pool.setReadOnly(true);
+            pool.setMetricsTrackerFactory(metrics);
+            replicas.add(pool);
+        }
+        
+        return new ReplicaRoutingDataSource(primary, replicas, readYourWrites, registry);
+    }
+    
+    /**
+     * Defers choosing a pool until the first statement, by which time the transaction's read-only flag is known.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
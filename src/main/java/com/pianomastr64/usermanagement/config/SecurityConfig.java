@@ -1,9 +1,17 @@
 package com.pianomastr64.usermanagement.config;
 
-import com.pianomastr64.usermanagement.user.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pianomastr64.usermanagement.auth.RevokedSessions;
+import com.pianomastr64.usermanagement.security.BoundedPasswordEncoder;
+import com.pianomastr64.usermanagement.security.CalibratedBCryptPasswordEncoder;
 import com.pianomastr64.usermanagement.security.JwtAuthFilter;
 import com.pianomastr64.usermanagement.security.JwtUtil;
+import com.pianomastr64.usermanagement.security.PasswordHashingProperties;
+import com.pianomastr64.usermanagement.security.PrincipalCache;
+import com.pianomastr64.usermanagement.security.RateLimitFilter;
+import com.pianomastr64.usermanagement.security.RateLimiter;
 import com.pianomastr64.usermanagement.util.ErrorResponseUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,8 +21,6 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.annotation.web.configurers.HeadersConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -37,11 +43,17 @@ public class SecurityConfig {
     }
     
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http, UserRepository repo) throws Exception {
+    public SecurityFilterChain securityFilterChain(
+        HttpSecurity http,
+        PrincipalCache principalCache,
+        RevokedSessions revokedSessions,
+        RateLimiter rateLimiter,
+        ObjectMapper objectMapper
+    ) throws Exception {
         return http
             .csrf(AbstractHttpConfigurer::disable)
             .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/auth/login", "/auth/register", "/h2-console/**").permitAll()
+                .requestMatchers("/auth/login", "/auth/register", "/auth/refresh", "/auth/logout", "/h2-console/**").permitAll()
                 .requestMatchers(SWAGGER_ENDPOINTS).permitAll() //disabled in prod profile
                 .requestMatchers("/actuator/**").permitAll()
                 // TODO add /admin/ endpoints in the future
@@ -69,12 +81,18 @@ public class SecurityConfig {
             .sessionManagement(session -> session
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
             )
-            .addFilterBefore(new JwtAuthFilter(jwtUtil, repo), UsernamePasswordAuthenticationFilter.class)
+            .addFilterBefore(new JwtAuthFilter(jwtUtil, principalCache, revokedSessions), UsernamePasswordAuthenticationFilter.class)
+            // Reject floods before the JWT filter can look anything up
+            .addFilterBefore(new RateLimitFilter(rateLimiter, jwtUtil, objectMapper), JwtAuthFilter.class)
             .build();
     }
     
+    /**
+     * BCrypt is slow on purpose, so it runs on its own bounded pool instead of the request threads.
+     * Its strength is calibrated at startup unless {@code security.password-hashing.strength} is set.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(PasswordHashingProperties properties, MeterRegistry registry) {
+        return new BoundedPasswordEncoder(CalibratedBCryptPasswordEncoder.create(properties), properties, registry);
     }
 }
@@ -0,0 +1,70 @@
+package com.pianomastr64.usermanagement.config;
+
+import com.pianomastr64.usermanagement.datasource.ConnectionLimitingDataSource;
+import com.pianomastr64.usermanagement.instrumentation.VirtualThreadPinningMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Support for running with {@code spring.threads.virtual.enabled=true} (the {@code virtual-threads} profile),
+ * where Tomcat and Spring's task executor and scheduler hand every task its own virtual thread.
+ *
+ * <p>Reports pinned virtual threads, and puts a {@link ConnectionLimitingDataSource} in front of the
+ * {@code dataSource} bean so requests queue for a permit instead of all waiting inside Hikari.</p>
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadsConfig.class);
+    
+    @Bean
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+        MeterRegistry registry,
+        VirtualThreadsProperties properties
+    ) {
+        return new VirtualThreadPinningMonitor(registry, properties.getPinnedThreshold());
+    }
+    
+    // Static and bound straight from the environment, since post-processors are created before other beans
+    @Bean
+    public static BeanPostProcessor connectionLimitingPostProcessor(
+        Environment environment,
+        ObjectProvider<MeterRegistry> registry
+    ) {
+        VirtualThreadsProperties properties = Binder.get(environment)
+            .bindOrCreate("virtual-threads", VirtualThreadsProperties.class);
+        
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(!beanName.equals("dataSource") || !(bean instanceof DataSource dataSource)) {
+                    return bean;
+                }
+                
+                int permits = properties.getConnectionPermits();
+                if(permits <= 0 && bean instanceof HikariDataSource hikari) {
+                    permits = hikari.getMaximumPoolSize();
+                }
+                if(permits <= 0) {
+                    LOGGER.warn("Database connections are not limited; set virtual-threads.connection-permits");
+                    return bean;
+                }
+                
+                return new ConnectionLimitingDataSource(
+                    dataSource, permits, properties.getConnectionPermitTimeout(), registry.getObject());
+            }
+        };
+    }
+}
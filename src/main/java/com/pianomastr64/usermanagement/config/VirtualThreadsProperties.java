@@ -0,0 +1,38 @@
+package com.pianomastr64.usermanagement.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "virtual-threads")
+public class VirtualThreadsProperties {
+    /**
+     * Virtual threads pinned to their carrier for less than this aren't reported.
+     */
+    private Duration pinnedThreshold = Duration.ofMillis(20);
+    
+    /**
+     * Connections that may be checked out at once. 0 uses the Hikari pool's maximum size; with replica
+     * routing on, where there are several pools, set it explicitly.
+     */
+    private int connectionPermits;
+    
+    /**
+     * How long a request waits for a connection permit before failing, like Hikari's connection timeout.
+     */
+    private Duration connectionPermitTimeout = Duration.ofSeconds(30);
+    
+    public Duration getPinnedThreshold() {return pinnedThreshold;}
+    
+    public void setPinnedThreshold(Duration pinnedThreshold) {this.pinnedThreshold = pinnedThreshold;}
+    
+    public int getConnectionPermits() {return connectionPermits;}
+    
+    public void setConnectionPermits(int connectionPermits) {this.connectionPermits = connectionPermits;}
+    
+    public Duration getConnectionPermitTimeout() {return connectionPermitTimeout;}
+    
+    public void setConnectionPermitTimeout(Duration connectionPermitTimeout) {this.connectionPermitTimeout = connectionPermitTimeout;}
+}
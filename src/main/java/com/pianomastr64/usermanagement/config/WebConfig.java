@@ -1,7 +1,14 @@
 package com.pianomastr64.usermanagement.config;
 
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.pianomastr64.usermanagement.security.CurrentUserIdArgumentResolver;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -10,13 +17,33 @@ import java.util.List;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     private final CurrentUserIdArgumentResolver currentUserIdArgumentResolver;
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
     
-    public WebConfig(CurrentUserIdArgumentResolver currentUserIdArgumentResolver) {
+    public WebConfig(
+        CurrentUserIdArgumentResolver currentUserIdArgumentResolver,
+        ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder
+    ) {
         this.currentUserIdArgumentResolver = currentUserIdArgumentResolver;
+        this.objectMapperBuilder = objectMapperBuilder;
     }
     
     @Override
     public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
         resolvers.add(currentUserIdArgumentResolver);
     }
+    
+    /**
+     * Spring MVC registers Smile and CBOR converters, after JSON so it stays the default, whenever their Jackson
+     * modules are present. Rebuild them from Boot's builder so they're configured like the JSON mapper.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(converter -> switch(converter) {
+            case MappingJackson2SmileHttpMessageConverter ignored -> new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(new SmileFactory()).build());
+            case MappingJackson2CborHttpMessageConverter ignored -> new MappingJackson2CborHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(new CBORFactory()).build());
+            default -> converter;
+        });
+    }
 }
@@ -0,0 +1,103 @@
+package com.pianomastr64.usermanagement.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets at most a fixed number of connections be checked out at once, queueing everyone else on a fair semaphore.
+ *
+ * <p>On virtual threads nothing caps how many requests run at once, so thousands can ask the pool for a
+ * connection together. Here they wait in arrival order, a permit is held until the connection is closed, and
+ * the queue is visible as {@code datasource.permits.waiting} alongside {@code datasource.permits.active}.</p>
+ *
+ * <p>Closing it closes the target, so a wrapped pool is still shut down with the context.</p>
+ */
+public class ConnectionLimitingDataSource extends DelegatingDataSource implements AutoCloseable {
+    private final Semaphore permits;
+    private final Duration timeout;
+    
+    public ConnectionLimitingDataSource(DataSource target, int permits, Duration timeout, MeterRegistry registry) {
+        super(target);
+        this.permits = new Semaphore(permits, true);
+        this.timeout = timeout;
+        
+        Gauge.builder("datasource.permits.waiting", this.permits, Semaphore::getQueueLength)
+            .description("Threads waiting for a database connection permit")
+            .register(registry);
+        Gauge.builder("datasource.permits.active", this.permits, semaphore -> permits - semaphore.availablePermits())
+            .description("Database connections checked out under a permit")
+            .register(registry);
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return releasingOnClose(super.getConnection());
+        } catch(SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return releasingOnClose(super.getConnection(username, password));
+        } catch(SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    private void acquire() throws SQLException {
+        try {
+            if(!permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new SQLTransientConnectionException(
+                    "No database connection permit became available within " + timeout);
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection permit", e);
+        }
+    }
+    
+    private Connection releasingOnClose(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+                try {
+                    return method.invoke(connection, args);
+                } catch(InvocationTargetException e) {
+                    throw e.getTargetException();
+                } finally {
+                    // Closing twice is allowed, but must only give the permit back once
+                    if(method.getName().equals("close") && released.compareAndSet(false, true)) {
+                        permits.release();
+                    }
+                }
+            });
+    }
+    
+    @Override
+    public void close() throws Exception {
+        if(getTargetDataSource() instanceof AutoCloseable target) {
+            target.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.pianomastr64.usermanagement.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.lang.Nullable;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Decides which reads must not go to a replica that may not have caught up yet.
+ *
+ * <p>Users whose data changed within the last {@code replica-routing.replica-lag} have their reads sent to the
+ * primary. The authenticated user is recorded automatically when they write. Code that changes another user,
+ * or writes on behalf of a user who isn't authenticated yet (registration, login, token refresh), must call
+ * {@link #recordWrite(Long)} with that user's id.</p>
+ *
+ * <p>Reads that must always be current, such as credential and role lookups, run inside {@link #onPrimary}.</p>
+ *
+ * <p>The record of recent writes is kept per instance, so a user whose next request lands on another instance
+ * may still read from a replica. Route users to the same instance if that matters.</p>
+ */
+@Component
+public class ReadYourWrites {
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+    
+    private final boolean enabled;
+    private final Cache<String, Boolean> recentWriters;
+    
+    public ReadYourWrites(ReplicaRoutingProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.recentWriters = Caffeine.newBuilder()
+            .expireAfterWrite(properties.getReplicaLag())
+            .maximumSize(100_000)
+            .build();
+    }
+    
+    public void recordWrite(Long userId) {
+        if(enabled) {
+            recentWriters.put(userId.toString(), Boolean.TRUE);
+        }
+    }
+    
+    public void recordWrites(Collection<Long> userIds) {
+        userIds.forEach(this::recordWrite);
+    }
+    
+    /**
+     * Runs {@code read} with every connection it opens taken from the primary.
+     */
+    public <T> T onPrimary(Supplier<T> read) {
+        Boolean previous = PRIMARY_REQUIRED.get();
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if(previous == null) {
+                PRIMARY_REQUIRED.remove();
+            }
+        }
+    }
+    
+    boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+    
+    void recordWriteByCurrentUser() {
+        String user = currentUser();
+        if(enabled && user != null) {
+            recentWriters.put(user, Boolean.TRUE);
+        }
+    }
+    
+    boolean currentUserWroteRecently() {
+        String user = currentUser();
+        return user != null && recentWriters.getIfPresent(user) != null;
+    }
+    
+    // JwtAuthFilter authenticates users under their id
+    @Nullable
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated() ? authentication.getName() : null;
+    }
+}
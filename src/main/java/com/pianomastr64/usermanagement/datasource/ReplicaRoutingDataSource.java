@@ -0,0 +1,97 @@
+package com.pianomastr64.usermanagement.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections for read-only transactions to the replicas, round-robin, and everything else to the primary.
+ *
+ * <p>The transaction's read-only flag is only known once it has started, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which defers picking a target
+ * until the first statement runs.</p>
+ *
+ * <p>Connections are counted in {@code datasource.routed}, tagged by target and reason. See {@link ReadYourWrites}
+ * for the reads that are kept on the primary.</p>
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    private static final String PRIMARY = "primary";
+    
+    private final int replicaCount;
+    private final ReadYourWrites readYourWrites;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    
+    private final Counter writes;
+    private final Counter readsAfterWrite;
+    private final Counter pinnedReads;
+    private final Counter replicaReads;
+    
+    public ReplicaRoutingDataSource(
+        DataSource primary,
+        List<DataSource> replicas,
+        ReadYourWrites readYourWrites,
+        MeterRegistry registry
+    ) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for(int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        
+        this.replicaCount = replicas.size();
+        this.readYourWrites = readYourWrites;
+        
+        this.writes = routed(registry, "primary", "write");
+        this.readsAfterWrite = routed(registry, "primary", "read_after_write");
+        this.pinnedReads = routed(registry, "primary", "pinned");
+        this.replicaReads = routed(registry, "replica", "read");
+    }
+    
+    private static Counter routed(MeterRegistry registry, String target, String reason) {
+        return Counter.builder("datasource.routed")
+            .tag("target", target)
+            .tag("reason", reason)
+            .register(registry);
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnly = TransactionSynchronizationManager.isActualTransactionActive()
+            && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        
+        if(!readOnly || replicaCount == 0) {
+            readYourWrites.recordWriteByCurrentUser();
+            writes.increment();
+            return PRIMARY;
+        }
+        if(readYourWrites.isPrimaryRequired()) {
+            pinnedReads.increment();
+            return PRIMARY;
+        }
+        if(readYourWrites.currentUserWroteRecently()) {
+            readsAfterWrite.increment();
+            return PRIMARY;
+        }
+        
+        replicaReads.increment();
+        return Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+    }
+    
+    @Override
+    public void close() throws Exception {
+        for(DataSource target : getResolvedDataSources().values()) {
+            if(target instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.pianomastr64.usermanagement.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "replica-routing")
+public class ReplicaRoutingProperties {
+    /**
+     * Send read-only transactions to {@link #replicas}. When off, {@code spring.datasource} is used for everything.
+     */
+    private boolean enabled = false;
+    
+    /**
+     * How far the replicas may lag behind the primary. For this long after a user's last write,
+     * that user's reads also go to the primary so they see their own changes.
+     */
+    private Duration replicaLag = Duration.ofSeconds(2);
+    
+    /**
+     * Read replicas, used in turn.
+     */
+    private List<Replica> replicas = new ArrayList<>();
+    
+    public boolean isEnabled() {return enabled;}
+    
+    public void setEnabled(boolean enabled) {this.enabled = enabled;}
+    
+    public Duration getReplicaLag() {return replicaLag;}
+    
+    public void setReplicaLag(Duration replicaLag) {this.replicaLag = replicaLag;}
+    
+    public List<Replica> getReplicas() {return replicas;}
+    
+    public void setReplicas(List<Replica> replicas) {this.replicas = replicas;}
+    
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+        
+        public String getUrl() {return url;}
+        
+        public void setUrl(String url) {this.url = url;}
+        
+        public String getUsername() {return username;}
+        
+        public void setUsername(String username) {this.username = username;}
+        
+        public String getPassword() {return password;}
+        
+        public void setPassword(String password) {this.password = password;}
+        
+        public int getMaximumPoolSize() {return maximumPoolSize;}
+        
+        public void setMaximumPoolSize(int maximumPoolSize) {this.maximumPoolSize = maximumPoolSize;}
+    }
+}
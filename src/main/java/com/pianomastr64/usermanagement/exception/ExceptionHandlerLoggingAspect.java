@@ -64,8 +64,8 @@ public class ExceptionHandlerLoggingAspect {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if(authentication != null && authentication.isAuthenticated()) {
                 Long id = Long.valueOf(authentication.getName());
-                user = userRepository.findById(id)
-                    .map(u -> u.getName() + " (" + u.getEmail() + ")")
+                user = userRepository.findDtoById(id)
+                    .map(u -> u.name() + " (" + u.email() + ")")
                     .orElse("Unknown User");
             }
         } catch(Exception ignored) {}
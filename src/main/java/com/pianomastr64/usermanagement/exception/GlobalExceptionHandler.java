@@ -1,7 +1,9 @@
 package com.pianomastr64.usermanagement.exception;
 
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.*;
 import org.springframework.lang.Nullable;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -15,6 +17,8 @@ import java.util.*;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+    // Unique constraints on users' emails; violating either means the email is taken
+    private static final List<String> EMAIL_CONSTRAINTS = List.of("uc_users_email_normalized", "uc_users_email");
     
     @Override
     @Nullable
@@ -73,6 +77,37 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(ex, body, new HttpHeaders(), status, request);
     }
     
+    // The database's constraints are the last line of defence, e.g. for an email taken on another
+    // instance after the known-email filter was last rebuilt. Only that case is the client's conflict;
+    // any other violation (NOT NULL, foreign key, check) means validation missed something.
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    @Nullable
+    public ResponseEntity<Object> handleDataIntegrityViolation(DataIntegrityViolationException ex, WebRequest request)
+        throws Exception {
+        if(!violatesEmailConstraint(ex)) {
+            return handleOtherException(ex, request);
+        }
+        
+        HttpStatus status = HttpStatus.CONFLICT;
+        ProblemDetail body = createProblemDetail(
+            ex, status, "Email already registered",
+            null, null, request);
+        
+        return handleExceptionInternal(ex, body, new HttpHeaders(), status, request);
+    }
+    
+    // Drivers report the name differently, e.g. H2 as "PUBLIC.UC_USERS_EMAIL_NORMALIZED_INDEX_4 ON ...", so match loosely
+    private static boolean violatesEmailConstraint(DataIntegrityViolationException ex) {
+        for(Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if(cause instanceof org.hibernate.exception.ConstraintViolationException violation
+                && violation.getConstraintName() != null) {
+                String constraint = violation.getConstraintName().toLowerCase(Locale.ROOT);
+                return EMAIL_CONSTRAINTS.stream().anyMatch(constraint::contains);
+            }
+        }
+        return false;
+    }
+    
     @ExceptionHandler(DuplicateEmailException.class)
     @Nullable
     public ResponseEntity<Object> handleDuplicateEmail(DuplicateEmailException ex, WebRequest request) {
@@ -84,6 +119,51 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(ex, body, new HttpHeaders(), status, request);
     }
     
+    @ExceptionHandler(VersionMismatchException.class)
+    @Nullable
+    public ResponseEntity<Object> handleVersionMismatch(VersionMismatchException ex, WebRequest request) {
+        HttpStatus status = HttpStatus.PRECONDITION_FAILED;
+        ProblemDetail body = createProblemDetail(
+            ex, status, ex.getMessage(),
+            null, null, request);
+        
+        return handleExceptionInternal(ex, body, new HttpHeaders(), status, request);
+    }
+    
+    // Two updates raced on the same version and this one lost at commit
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @Nullable
+    public ResponseEntity<Object> handleOptimisticLockingFailure(OptimisticLockingFailureException ex, WebRequest request) {
+        HttpStatus status = HttpStatus.CONFLICT;
+        ProblemDetail body = createProblemDetail(
+            ex, status, "The resource was modified concurrently. Fetch it again and retry.",
+            null, null, request);
+        
+        return handleExceptionInternal(ex, body, new HttpHeaders(), status, request);
+    }
+    
+    @ExceptionHandler(InvalidCursorException.class)
+    @Nullable
+    public ResponseEntity<Object> handleInvalidCursor(InvalidCursorException ex, WebRequest request) {
+        HttpStatus status = HttpStatus.BAD_REQUEST;
+        ProblemDetail body = createProblemDetail(
+            ex, status, ex.getMessage(),
+            null, null, request);
+        
+        return handleExceptionInternal(ex, body, new HttpHeaders(), status, request);
+    }
+    
+    @ExceptionHandler(InvalidSearchQueryException.class)
+    @Nullable
+    public ResponseEntity<Object> handleInvalidSearchQuery(InvalidSearchQueryException ex, WebRequest request) {
+        HttpStatus status = HttpStatus.BAD_REQUEST;
+        ProblemDetail body = createProblemDetail(
+            ex, status, ex.getMessage(),
+            null, null, request);
+        
+        return handleExceptionInternal(ex, body, new HttpHeaders(), status, request);
+    }
+    
     @ExceptionHandler(BadCredentialsException.class)
     @Nullable
     public ResponseEntity<Object> handleBadCredentials(BadCredentialsException ex, WebRequest request) {
@@ -95,6 +175,20 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(ex, body, new HttpHeaders(), status, request);
     }
     
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    @Nullable
+    public ResponseEntity<Object> handlePasswordHashingRejected(PasswordHashingRejectedException ex, WebRequest request) {
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        ProblemDetail body = createProblemDetail(
+            ex, status, ex.getMessage(),
+            null, null, request);
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        
+        return handleExceptionInternal(ex, body, headers, status, request);
+    }
+    
     // Catch all for any other exceptions for development purposes
     @ExceptionHandler(Exception.class)
     @Nullable
@@ -0,0 +1,7 @@
+package com.pianomastr64.usermanagement.exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
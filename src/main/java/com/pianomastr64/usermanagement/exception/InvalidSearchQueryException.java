@@ -0,0 +1,7 @@
+package com.pianomastr64.usermanagement.exception;
+
+public class InvalidSearchQueryException extends RuntimeException {
+    public InvalidSearchQueryException(String message) {
+        super(message);
+    }
+}
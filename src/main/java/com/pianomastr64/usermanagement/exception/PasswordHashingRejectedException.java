@@ -0,0 +1,7 @@
+package com.pianomastr64.usermanagement.exception;
+
+public class PasswordHashingRejectedException extends RuntimeException {
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.pianomastr64.usermanagement.exception;
+
+/**
+ * Thrown when a conditional update's {@code If-Match} doesn't name the resource's current version.
+ */
+public class VersionMismatchException extends RuntimeException {
+    public VersionMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,83 @@
+package com.pianomastr64.usermanagement.instrumentation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier thread, e.g. while blocking inside a
+ * {@code synchronized} block in the JDBC driver, since each one holds a carrier away from every other request.
+ *
+ * <p>Listens for JFR's {@code jdk.VirtualThreadPinned} events longer than {@code virtual-threads.pinned-threshold}.
+ * Each is timed in {@code jvm.threads.virtual.pinned}, tagged with the innermost frame of our own code, and the
+ * first stack trace from every such site is logged.</p>
+ */
+public class VirtualThreadPinningMonitor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.pianomastr64.";
+    private static final int LOGGED_FRAMES = 20;
+    
+    private final MeterRegistry registry;
+    private final Duration threshold;
+    private final RecordingStream stream = new RecordingStream();
+    private final Set<String> loggedSites = ConcurrentHashMap.newKeySet();
+    
+    public VirtualThreadPinningMonitor(MeterRegistry registry, Duration threshold) {
+        this.registry = registry;
+        this.threshold = threshold;
+    }
+    
+    @PostConstruct
+    void start() {
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::record);
+        stream.startAsync();
+    }
+    
+    private void record(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        String site = stackTrace == null ? "unknown" : stackTrace.getFrames().stream()
+            .filter(RecordedFrame::isJavaFrame)
+            .map(VirtualThreadPinningMonitor::describe)
+            .filter(frame -> frame.startsWith(APPLICATION_PACKAGE))
+            .findFirst()
+            .orElse("other");
+        
+        Timer.builder("jvm.threads.virtual.pinned")
+            .description("Time virtual threads spent pinned to their carrier")
+            .tag("site", site)
+            .register(registry)
+            .record(event.getDuration());
+        
+        if(stackTrace != null && loggedSites.add(site)) {
+            LOGGER.warn("Virtual thread pinned for {} ms at {}:\n\t{}",
+                event.getDuration().toMillis(), site,
+                stackTrace.getFrames().stream()
+                    .limit(LOGGED_FRAMES)
+                    .map(VirtualThreadPinningMonitor::describe)
+                    .collect(Collectors.joining("\n\t")));
+        }
+    }
+    
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+    }
+    
+    @PreDestroy
+    void stop() {
+        stream.close();
+    }
+}
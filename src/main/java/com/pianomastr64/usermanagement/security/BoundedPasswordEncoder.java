@@ -0,0 +1,173 @@
+package com.pianomastr64.usermanagement.security;
+
+import com.pianomastr64.usermanagement.exception.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs a (deliberately slow) password encoder on its own fixed-size pool, so a burst of logins or
+ * registrations can't tie up every request thread with hashing work.
+ *
+ * <p>Callers still wait for the result, but only {@code security.password-hashing.pool-size} hashes run at once,
+ * and at most {@code security.password-hashing.queue-capacity} wait for a thread. Anything beyond that fails fast
+ * with a {@link PasswordHashingRejectedException}.</p>
+ *
+ * <p>Metrics:</p>
+ * <ul>
+ *     <li>{@code password.hashing.queue} – operations waiting for a thread</li>
+ *     <li>{@code password.hashing.wait} – time spent waiting for a thread, by operation</li>
+ *     <li>{@code password.hashing.time} – time spent hashing, by operation</li>
+ *     <li>{@code password.hashing.rejected} – operations rejected because the queue was full</li>
+ * </ul>
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+    private record Meters(Timer waitTimer, Timer hashTimer) {}
+    
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final int bulkParallelism;
+    
+    private final Meters encodeMeters;
+    private final Meters matchesMeters;
+    private final Counter rejected;
+    
+    public BoundedPasswordEncoder(PasswordEncoder delegate, PasswordHashingProperties properties, MeterRegistry registry) {
+        this.delegate = delegate;
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            properties.getPoolSize(), properties.getPoolSize(),
+            0L, TimeUnit.MILLISECONDS,
+            // ArrayBlockingQueue can't have a capacity of 0; a SynchronousQueue turns away anything no thread takes
+            properties.getQueueCapacity() > 0
+                ? new ArrayBlockingQueue<>(properties.getQueueCapacity())
+                : new SynchronousQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        Integer bulkParallelism = properties.getBulkParallelism();
+        this.bulkParallelism = Math.max(1, Math.min(
+            bulkParallelism != null ? bulkParallelism : properties.getPoolSize() / 2,
+            properties.getPoolSize()));
+        
+        this.encodeMeters = meters(registry, "encode");
+        this.matchesMeters = meters(registry, "matches");
+        this.rejected = Counter.builder("password.hashing.rejected")
+            .description("Password operations rejected because the hashing queue was full")
+            .register(registry);
+        Gauge.builder("password.hashing.queue", executor, e -> e.getQueue().size())
+            .description("Password operations waiting for a hashing thread")
+            .register(registry);
+    }
+    
+    private static Meters meters(MeterRegistry registry, String operation) {
+        return new Meters(
+            Timer.builder("password.hashing.wait")
+                .tag("operation", operation)
+                .register(registry),
+            Timer.builder("password.hashing.time")
+                .tag("operation", operation)
+                .register(registry));
+    }
+    
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeMeters, () -> delegate.encode(rawPassword));
+    }
+    
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesMeters, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+    
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+    
+    /**
+     * Encodes many passwords in parallel, keeping at most {@code security.password-hashing.bulk-parallelism}
+     * of them in flight so a bulk request can't crowd logins out of the queue.
+     *
+     * @return the hashes in the same order as {@code rawPasswords} (null for null passwords)
+     * @throws PasswordHashingRejectedException if the queue fills up; no partial result is returned
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        int count = rawPasswords.size();
+        String[] hashes = new String[count];
+        List<Future<String>> futures = new ArrayList<>(count);
+        
+        try {
+            for(int i = 0; i < count; i++) {
+                // Top up the window before waiting on the oldest hash
+                while(futures.size() < count && futures.size() - i < bulkParallelism) {
+                    CharSequence rawPassword = rawPasswords.get(futures.size());
+                    futures.add(rawPassword == null
+                        ? CompletableFuture.<String>completedFuture(null)
+                        : submit(encodeMeters, () -> delegate.encode(rawPassword)));
+                }
+                hashes[i] = await(futures.get(i));
+            }
+        } catch(RuntimeException | Error e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+        
+        return Arrays.asList(hashes);
+    }
+    
+    private <T> T run(Meters meters, Supplier<T> task) {
+        return await(submit(meters, task));
+    }
+    
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch(InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if(e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    private <T> Future<T> submit(Meters meters, Supplier<T> task) {
+        long queuedAt = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                meters.waitTimer().record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return meters.hashTimer().record(task);
+            });
+        } catch(RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingRejectedException("Too many password operations in progress. Please try again later.");
+        }
+    }
+    
+    /**
+     * Called by Spring when the context closes.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,75 @@
+package com.pianomastr64.usermanagement.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link BCryptPasswordEncoder} whose strength is picked for the hardware it runs on.
+ *
+ * <p>Unlike the parent class, {@link #upgradeEncoding(String)} reports any hash whose strength differs from
+ * the current one, not just weaker ones, so stored hashes follow the calibrated strength in both directions
+ * as users log in.</p>
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+    
+    private static final Pattern BCRYPT_STRENGTH = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+    private static final int MAX_STRENGTH = 31;
+    
+    private final int strength;
+    
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+    
+    /**
+     * Uses the configured strength if there is one, otherwise benchmarks increasing strengths and picks
+     * the highest one that still hashes within {@code security.password-hashing.target-latency}.
+     */
+    public static CalibratedBCryptPasswordEncoder create(PasswordHashingProperties properties) {
+        if(properties.getStrength() != null) {
+            LOGGER.info("Using configured BCrypt strength {}", properties.getStrength());
+            return new CalibratedBCryptPasswordEncoder(properties.getStrength());
+        }
+        
+        long targetNanos = properties.getTargetLatency().toNanos();
+        int minStrength = properties.getMinStrength();
+        
+        // Warm up so class loading and JIT don't count against the first measurement
+        time(new BCryptPasswordEncoder(4));
+        
+        int chosen = minStrength;
+        long chosenNanos = time(new BCryptPasswordEncoder(minStrength));
+        // Each step doubles the cost, so stop as soon as the next one would overshoot
+        while(chosen < MAX_STRENGTH && chosenNanos * 2 <= targetNanos) {
+            chosen++;
+            chosenNanos = time(new BCryptPasswordEncoder(chosen));
+        }
+        
+        LOGGER.info("Calibrated BCrypt strength {} ({} ms per hash, target {} ms)",
+            chosen, Duration.ofNanos(chosenNanos).toMillis(), properties.getTargetLatency().toMillis());
+        return new CalibratedBCryptPasswordEncoder(chosen);
+    }
+    
+    private static long time(BCryptPasswordEncoder encoder) {
+        long start = System.nanoTime();
+        encoder.encode("calibration");
+        return System.nanoTime() - start;
+    }
+    
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if(encodedPassword == null) {
+            return false;
+        }
+        
+        Matcher matcher = BCRYPT_STRENGTH.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+}
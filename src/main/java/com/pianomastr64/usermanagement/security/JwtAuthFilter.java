@@ -1,26 +1,35 @@
 package com.pianomastr64.usermanagement.security;
 
-import com.pianomastr64.usermanagement.user.UserRepository;
+import com.pianomastr64.usermanagement.auth.RevokedSessions;
+import com.pianomastr64.usermanagement.user.Role;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
 public class JwtAuthFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
-    private final UserRepository repo;
+    private final PrincipalCache principalCache;
+    private final RevokedSessions revokedSessions;
+    // Streamed responses are written on an async dispatch, which this filter skips, so the
+    // authentication is kept on the request for the dispatch's authorization check
+    private final SecurityContextRepository contextRepository = new RequestAttributeSecurityContextRepository();
     
-    public JwtAuthFilter(JwtUtil jwtUtil, UserRepository repo) {
+    public JwtAuthFilter(JwtUtil jwtUtil, PrincipalCache principalCache, RevokedSessions revokedSessions) {
         this.jwtUtil = jwtUtil;
-        this.repo = repo;
+        this.principalCache = principalCache;
+        this.revokedSessions = revokedSessions;
     }
     
     @Override
@@ -33,16 +42,24 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         
         if(authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            if(!jwtUtil.validateToken(token)) {
+            TokenClaims claims = jwtUtil.parseToken(token).orElse(null);
+            if(claims == null) {
                 response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid JWT token");
                 return;
             }
             
-            Long id = jwtUtil.extractId(token);
-
-            com.pianomastr64.usermanagement.user.User user = repo.findById(id)
-                .orElse(null);
-            if (user == null) {
+            if(claims.sessionId() != null && revokedSessions.isRevoked(claims.sessionId())) {
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Session has been revoked");
+                return;
+            }
+            
+            Long id = claims.userId();
+            
+            // Only tokens issued in claims mode with the current version can skip the lookup
+            Role role = claims.role() != null
+                ? claims.role()
+                : principalCache.getRole(id).orElse(null);
+            if (role == null) {
                 response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "User not found");
                 return;
             }
@@ -50,7 +67,7 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             UserDetails userDetails = User
                 .withUsername(id.toString())
                 .password("") // password is not needed for JWT authentication
-                .roles(user.getRole().name())
+                .roles(role.name())
                 .build();
             
             UsernamePasswordAuthenticationToken authToken =
@@ -58,7 +75,10 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             
             authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
             
-            SecurityContextHolder.getContext().setAuthentication(authToken);
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(authToken);
+            SecurityContextHolder.setContext(context);
+            contextRepository.saveContext(context, request, response);
         }
         
         chain.doFilter(request, response);
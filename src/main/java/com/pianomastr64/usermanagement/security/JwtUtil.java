@@ -1,5 +1,7 @@
 package com.pianomastr64.usermanagement.security;
 
+import com.pianomastr64.usermanagement.user.Role;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
@@ -8,22 +10,53 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Optional;
 
 @Component
 public class JwtUtil {
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtUtil.class);
     
-    private static final long EXPIRATION_TIME = 1000 * 60 * 60 * 24; // 1 day in milliseconds
+    static final String ROLE_CLAIM = "role";
+    static final String VERSION_CLAIM = "ver";
+    static final String SESSION_CLAIM = "sid";
     
     private final SecretKey key;
     private final JwtParser parser;
+    private final VerifiedTokenCache tokenCache;
     
-    public JwtUtil(@Value("${jwt.secret}") String secret, Environment env) {
+    /**
+     * Access tokens are short-lived; clients get new ones with their refresh token.
+     */
+    private final Duration accessTokenTtl;
+    
+    /**
+     * When enabled, tokens carry the user's role so requests can be authenticated without a database lookup.
+     * The trade-off is that a role change only applies to tokens issued afterward,
+     * unless {@link #claimsVersion} is bumped.
+     */
+    private final boolean claimsMode;
+    
+    /**
+     * Stamped into every new token. Tokens with an older version fall back to the database lookup,
+     * so bumping this forces every outstanding token to be re-checked.
+     */
+    private final int claimsVersion;
+    
+    public JwtUtil(
+        @Value("${jwt.secret}") String secret,
+        @Value("${jwt.claims-mode.enabled:false}") boolean claimsMode,
+        @Value("${jwt.claims-mode.version:1}") int claimsVersion,
+        @Value("${jwt.access-token-ttl:15m}") Duration accessTokenTtl,
+        VerifiedTokenCache tokenCache,
+        Environment env
+    ) {
         if(secret == null || secret.length() < 32) {
             throw new IllegalStateException("JWT secret must be set and at least 32 characters.");
         }
@@ -44,31 +77,100 @@ public class JwtUtil {
         parser = Jwts.parser()
             .verifyWith(key)
             .build();
+        
+        this.claimsMode = claimsMode;
+        this.claimsVersion = claimsVersion;
+        this.accessTokenTtl = accessTokenTtl;
+        this.tokenCache = tokenCache;
     }
     
-    public String generateToken(Long userId) {
-        return Jwts.builder()
+    public String generateToken(Long userId, Role role, @Nullable Long sessionId) {
+        var builder = Jwts.builder()
             .subject(userId.toString())
             .issuedAt(new Date())
-            .expiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+            .expiration(new Date(System.currentTimeMillis() + accessTokenTtl.toMillis()));
+        
+        if(sessionId != null) {
+            builder.claim(SESSION_CLAIM, sessionId);
+        }
+        
+        if(claimsMode) {
+            builder.claim(ROLE_CLAIM, role.name())
+                .claim(VERSION_CLAIM, claimsVersion);
+        }
+        
+        return builder
             .signWith(key)
             .compact();
     }
     
-    public Long extractId(String token) {
-        String id = parser
-            .parseSignedClaims(token)
-            .getPayload()
-            .getSubject();
-        return Long.valueOf(id);
+    /**
+     * Verifies the token and reads its claims with a single parse.
+     *
+     * @return the claims, or empty if the token is missing, malformed, expired or has an invalid signature
+     */
+    public Optional<TokenClaims> parseToken(@Nullable String token) {
+        if(token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        
+        TokenClaims cached = tokenCache.get(token);
+        if(cached != null) {
+            return Optional.of(cached);
+        }
+        
+        Claims claims;
+        try {
+            claims = parser.parseSignedClaims(token).getPayload();
+        } catch(JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        
+        Long id;
+        try {
+            id = Long.valueOf(claims.getSubject());
+        } catch(NumberFormatException e) {
+            return Optional.empty();
+        }
+        
+        Number sessionId = claims.get(SESSION_CLAIM, Number.class);
+        TokenClaims tokenClaims = new TokenClaims(
+            id,
+            trustedRole(claims),
+            sessionId != null ? sessionId.longValue() : null);
+        if(claims.getExpiration() != null) {
+            tokenCache.put(token, tokenClaims, claims.getExpiration().toInstant());
+        }
+        
+        return Optional.of(tokenClaims);
     }
     
-    public boolean validateToken(String token) {
+    @Nullable
+    private Role trustedRole(Claims claims) {
+        if(!claimsMode) {
+            return null;
+        }
+        
+        Integer version = claims.get(VERSION_CLAIM, Integer.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        if(version == null || version < claimsVersion || role == null) {
+            return null;
+        }
+        
         try {
-            parser.parseSignedClaims(token);
-            return true;
-        } catch(JwtException | IllegalArgumentException e) {
-            return false;
+            return Role.valueOf(role);
+        } catch(IllegalArgumentException e) {
+            return null;
         }
     }
+    
+    public Long extractId(String token) {
+        return parseToken(token)
+            .map(TokenClaims::userId)
+            .orElseThrow(() -> new JwtException("Invalid JWT token"));
+    }
+    
+    public boolean validateToken(@Nullable String token) {
+        return parseToken(token).isPresent();
+    }
 }
@@ -0,0 +1,71 @@
+package com.pianomastr64.usermanagement.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.password-hashing")
+public class PasswordHashingProperties {
+    /**
+     * Number of threads that hash and verify passwords. Defaults to the number of available processors.
+     */
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * Number of password operations allowed to wait for a thread before new ones are rejected. With 0, an operation
+     * is rejected whenever every thread is busy.
+     */
+    private int queueCapacity = 50;
+    
+    /**
+     * Maximum number of hashes a single bulk request may have in flight. Defaults to half the pool size,
+     * so logins still get threads while a bulk create runs. Capped at the pool size.
+     */
+    @Nullable
+    private Integer bulkParallelism;
+    
+    /**
+     * How long a single hash should take. The BCrypt strength is calibrated against this at startup.
+     */
+    private Duration targetLatency = Duration.ofMillis(80);
+    
+    /**
+     * Lowest BCrypt strength calibration may choose, regardless of how slow the hardware is.
+     */
+    private int minStrength = 10;
+    
+    /**
+     * Fixed BCrypt strength. Skips calibration when set.
+     */
+    @Nullable
+    private Integer strength;
+    
+    public int getPoolSize() {return poolSize;}
+    
+    public void setPoolSize(int poolSize) {this.poolSize = poolSize;}
+    
+    public int getQueueCapacity() {return queueCapacity;}
+    
+    public void setQueueCapacity(int queueCapacity) {this.queueCapacity = queueCapacity;}
+    
+    @Nullable
+    public Integer getBulkParallelism() {return bulkParallelism;}
+    
+    public void setBulkParallelism(@Nullable Integer bulkParallelism) {this.bulkParallelism = bulkParallelism;}
+    
+    public Duration getTargetLatency() {return targetLatency;}
+    
+    public void setTargetLatency(Duration targetLatency) {this.targetLatency = targetLatency;}
+    
+    public int getMinStrength() {return minStrength;}
+    
+    public void setMinStrength(int minStrength) {this.minStrength = minStrength;}
+    
+    @Nullable
+    public Integer getStrength() {return strength;}
+    
+    public void setStrength(@Nullable Integer strength) {this.strength = strength;}
+}
@@ -0,0 +1,90 @@
+package com.pianomastr64.usermanagement.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pianomastr64.usermanagement.datasource.ReadYourWrites;
+import com.pianomastr64.usermanagement.user.Role;
+import com.pianomastr64.usermanagement.user.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Bounded cache of the role each user id authenticates with, so {@link JwtAuthFilter} doesn't
+ * have to query the users table on every request.
+ *
+ * <p>Entries expire after {@code security.principal-cache.ttl}, and at most
+ * {@code security.principal-cache.maximum-size} users are kept. Anything that changes a user's role
+ * or removes a user must call {@link #invalidate(Long)}. Inside a transaction the entry is dropped again once it
+ * completes, so a request that reads the old role before the commit can't cache it for the whole TTL.</p>
+ *
+ * <p>Hit, miss and eviction counts are published as the {@code principals} cache metrics.</p>
+ */
+@Component
+public class PrincipalCache {
+    private final UserRepository repo;
+    private final ReadYourWrites readYourWrites;
+    private final Cache<Long, Role> roles;
+    
+    public PrincipalCache(
+        UserRepository repo,
+        ReadYourWrites readYourWrites,
+        PrincipalCacheProperties properties,
+        MeterRegistry registry
+    ) {
+        this.repo = repo;
+        this.readYourWrites = readYourWrites;
+        this.roles = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getTtl())
+            .recordStats()
+            .build();
+        
+        CaffeineCacheMetrics.monitor(registry, roles, "principals");
+    }
+    
+    /**
+     * @return the user's role, or empty if the user doesn't exist (which is never cached)
+     */
+    public Optional<Role> getRole(Long id) {
+        // Read from the primary, so a lagging replica's role is never cached for the whole TTL
+        return Optional.ofNullable(roles.get(id, key -> readYourWrites.onPrimary(() -> repo.findRoleById(key)).orElse(null)));
+    }
+    
+    public void invalidate(Long id) {
+        invalidateAll(List.of(id));
+    }
+    
+    public void invalidateAll(Collection<Long> ids) {
+        roles.invalidateAll(ids);
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    roles.invalidateAll(ids);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Drops every user, for changes that can't name the users they affect, e.g. a role-wide update.
+     */
+    public void invalidateAll() {
+        roles.invalidateAll();
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    roles.invalidateAll();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.pianomastr64.usermanagement.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.principal-cache")
+public class PrincipalCacheProperties {
+    /**
+     * Maximum number of users whose role is kept in memory.
+     */
+    private long maximumSize = 10_000;
+    
+    /**
+     * How long a cached role is trusted before it is read from the database again.
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+    
+    public long getMaximumSize() {return maximumSize;}
+    
+    public void setMaximumSize(long maximumSize) {this.maximumSize = maximumSize;}
+    
+    public Duration getTtl() {return ttl;}
+    
+    public void setTtl(Duration ttl) {this.ttl = ttl;}
+}
@@ -0,0 +1,111 @@
+package com.pianomastr64.usermanagement.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pianomastr64.usermanagement.util.CachedBodyHttpServletRequest;
+import com.pianomastr64.usermanagement.util.ErrorResponseUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.Nullable;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects requests with 429 before any authentication, database or hashing work is done.
+ *
+ * <p>Every request is limited by client IP. Requests with a valid bearer token are also limited by user id,
+ * and login attempts by the email they try to log in as. The client IP is the servlet remote address,
+ * so set {@code server.forward-headers-strategy} when running behind a proxy.</p>
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final String LOGIN_PATH = "/auth/login";
+    private static final int MAX_LOGIN_BODY_BYTES = 16 * 1024;
+    
+    private final RateLimiter rateLimiter;
+    private final JwtUtil jwtUtil;
+    private final ObjectMapper objectMapper;
+    
+    public RateLimitFilter(RateLimiter rateLimiter, JwtUtil jwtUtil, ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.jwtUtil = jwtUtil;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !rateLimiter.isEnabled();
+    }
+    
+    @Override
+    protected void doFilterInternal(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        FilterChain chain
+    ) throws ServletException, IOException {
+        if(rejected(response, RateLimiter.Scope.IP, request.getRemoteAddr())) {
+            return;
+        }
+        
+        // Verified tokens are cached, so the filter behind this one won't pay for the parse again
+        String authHeader = request.getHeader("Authorization");
+        if(authHeader != null && authHeader.startsWith("Bearer ")) {
+            TokenClaims claims = jwtUtil.parseToken(authHeader.substring(7)).orElse(null);
+            if(claims != null && rejected(response, RateLimiter.Scope.USER, claims.userId().toString())) {
+                return;
+            }
+        }
+        
+        if(isLogin(request)) {
+            // Read up to the cap whatever Content-Length says, so chunked bodies can't skip the per-email limit
+            if(request.getContentLengthLong() > MAX_LOGIN_BODY_BYTES) {
+                ErrorResponseUtil.writeJsonError(response, 413, "Login request body is too large.");
+                return;
+            }
+            CachedBodyHttpServletRequest cachedRequest = new CachedBodyHttpServletRequest(request, MAX_LOGIN_BODY_BYTES);
+            if(cachedRequest.exceeds(MAX_LOGIN_BODY_BYTES)) {
+                ErrorResponseUtil.writeJsonError(response, 413, "Login request body is too large.");
+                return;
+            }
+            String email = loginEmail(cachedRequest.getBody());
+            if(email != null && rejected(response, RateLimiter.Scope.LOGIN, email)) {
+                return;
+            }
+            request = cachedRequest;
+        }
+        
+        chain.doFilter(request, response);
+    }
+    
+    // The servlet path is empty under MockMvc and depends on the servlet mapping, the request URI doesn't
+    private static boolean isLogin(HttpServletRequest request) {
+        return "POST".equals(request.getMethod())
+            && (request.getContextPath() + LOGIN_PATH).equals(request.getRequestURI());
+    }
+    
+    @Nullable
+    private String loginEmail(byte[] body) {
+        try {
+            JsonNode email = objectMapper.readTree(body).get("email");
+            return email != null && email.isTextual() ? email.asText().trim().toLowerCase() : null;
+        } catch(IOException e) {
+            return null; // let the controller report the malformed body
+        }
+    }
+    
+    private boolean rejected(HttpServletResponse response, RateLimiter.Scope scope, String key) throws IOException {
+        long retryAfterNanos = rateLimiter.tryAcquire(scope, key);
+        if(retryAfterNanos == 0) {
+            return false;
+        }
+        
+        long retryAfterSeconds = Math.max(1, (long) Math.ceil(retryAfterNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        ErrorResponseUtil.writeJsonError(response, 429, "Too many requests. Please try again later.");
+        return true;
+    }
+}
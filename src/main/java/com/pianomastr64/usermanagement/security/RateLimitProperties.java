@@ -0,0 +1,83 @@
+package com.pianomastr64.usermanagement.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+    /**
+     * Enables or disables rate limiting.
+     */
+    private boolean enabled = true;
+    
+    /**
+     * Maximum number of clients (IPs, login emails and user ids combined) tracked at once.
+     */
+    private long maximumKeys = 100_000;
+    
+    /**
+     * How long a client can stay idle before its bucket is dropped.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+    
+    /**
+     * Limit per client IP, applied to every request.
+     */
+    private final Bucket ip = new Bucket(100, 50);
+    
+    /**
+     * Limit per email address, applied to login attempts.
+     */
+    private final Bucket login = new Bucket(10, 0.2);
+    
+    /**
+     * Limit per authenticated user id.
+     */
+    private final Bucket user = new Bucket(100, 20);
+    
+    public boolean isEnabled() {return enabled;}
+    
+    public void setEnabled(boolean enabled) {this.enabled = enabled;}
+    
+    public long getMaximumKeys() {return maximumKeys;}
+    
+    public void setMaximumKeys(long maximumKeys) {this.maximumKeys = maximumKeys;}
+    
+    public Duration getIdleTimeout() {return idleTimeout;}
+    
+    public void setIdleTimeout(Duration idleTimeout) {this.idleTimeout = idleTimeout;}
+    
+    public Bucket getIp() {return ip;}
+    
+    public Bucket getLogin() {return login;}
+    
+    public Bucket getUser() {return user;}
+    
+    public static class Bucket {
+        /**
+         * Number of requests allowed in a burst.
+         */
+        private long capacity;
+        
+        /**
+         * Number of requests added back to the bucket every second.
+         */
+        private double refillPerSecond;
+        
+        public Bucket(long capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+        
+        public long getCapacity() {return capacity;}
+        
+        public void setCapacity(long capacity) {this.capacity = capacity;}
+        
+        public double getRefillPerSecond() {return refillPerSecond;}
+        
+        public void setRefillPerSecond(double refillPerSecond) {this.refillPerSecond = refillPerSecond;}
+    }
+}
@@ -0,0 +1,68 @@
+package com.pianomastr64.usermanagement.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Keeps a {@link TokenBucket} per client key. Buckets of idle clients are evicted after
+ * {@code rate-limit.idle-timeout}, and at most {@code rate-limit.maximum-keys} are kept, so the map can't grow
+ * without bound.
+ *
+ * <p>Rejections are counted in {@code rate.limit.rejections}, tagged by scope.</p>
+ */
+@Component
+public class RateLimiter {
+    public enum Scope {
+        IP, LOGIN, USER
+    }
+    
+    private final boolean enabled;
+    private final Map<Scope, RateLimitProperties.Bucket> limits = new EnumMap<>(Scope.class);
+    private final Map<Scope, Counter> rejections = new EnumMap<>(Scope.class);
+    private final Cache<String, TokenBucket> buckets;
+    
+    public RateLimiter(RateLimitProperties properties, MeterRegistry registry) {
+        this.enabled = properties.isEnabled();
+        
+        limits.put(Scope.IP, properties.getIp());
+        limits.put(Scope.LOGIN, properties.getLogin());
+        limits.put(Scope.USER, properties.getUser());
+        
+        for(Scope scope : Scope.values()) {
+            rejections.put(scope, Counter.builder("rate.limit.rejections")
+                .description("Requests rejected by the rate limiter")
+                .tag("scope", scope.name().toLowerCase())
+                .register(registry));
+        }
+        
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumKeys())
+            .expireAfterAccess(properties.getIdleTimeout())
+            .build();
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * @return 0 if the request may proceed, otherwise the number of nanoseconds until it may be retried
+     */
+    public long tryAcquire(Scope scope, String key) {
+        RateLimitProperties.Bucket limit = limits.get(scope);
+        TokenBucket bucket = buckets.get(scope + ":" + key,
+            k -> new TokenBucket(limit.getCapacity(), limit.getRefillPerSecond()));
+        
+        long retryAfterNanos = bucket.tryConsume();
+        if(retryAfterNanos > 0) {
+            rejections.get(scope).increment();
+        }
+        return retryAfterNanos;
+    }
+}
@@ -0,0 +1,43 @@
+package com.pianomastr64.usermanagement.security;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free token bucket. Tokens are refilled lazily from the time elapsed since the last call,
+ * so an idle bucket costs nothing.
+ */
+final class TokenBucket {
+    private record State(double tokens, long refilledAt) {}
+    
+    private final long capacity;
+    private final double refillPerNano;
+    private final AtomicReference<State> state;
+    
+    TokenBucket(long capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.state = new AtomicReference<>(new State(capacity, System.nanoTime()));
+    }
+    
+    /**
+     * @return 0 if a token was taken, otherwise the number of nanoseconds until one is available
+     */
+    long tryConsume() {
+        while(true) {
+            State current = state.get();
+            long now = System.nanoTime();
+            double tokens = Math.min(capacity, current.tokens() + (now - current.refilledAt()) * refillPerNano);
+            
+            if(tokens < 1) {
+                return refillPerNano > 0
+                    ? (long) Math.ceil((1 - tokens) / refillPerNano)
+                    : Long.MAX_VALUE;
+            }
+            
+            if(state.compareAndSet(current, new State(tokens - 1, now))) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.pianomastr64.usermanagement.security;
+
+import com.pianomastr64.usermanagement.user.Role;
+import org.springframework.lang.Nullable;
+
+/**
+ * The verified contents of an access token.
+ *
+ * @param userId    The subject of the token
+ * @param role      The role embedded in the token, or null if the role has to be read from the database
+ *                  (claims mode is off, the token predates it, or its version is older than the current one)
+ * @param sessionId The login session the token was issued for, or null for tokens issued before sessions existed
+ */
+public record TokenClaims(
+    Long userId,
+    @Nullable Role role,
+    @Nullable Long sessionId
+) {}
@@ -0,0 +1,76 @@
+package com.pianomastr64.usermanagement.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Remembers tokens whose signature has already been verified, so clients that reuse a token
+ * don't pay for HMAC verification and Base64/JSON decoding on every request.
+ *
+ * <p>Entries are keyed by the token's signature segment, which is already a digest of the header and payload.
+ * The full token is kept alongside the claims and compared on lookup, so a forged payload carrying
+ * a copied signature is never served from the cache. Each entry expires exactly at the token's {@code exp}.</p>
+ *
+ * <p>Hit and miss counts are published as the {@code jwt.tokens} cache metrics.</p>
+ */
+@Component
+public class VerifiedTokenCache {
+    private record Entry(String token, TokenClaims claims, Instant expiresAt) {}
+    
+    private final boolean enabled;
+    private final Cache<String, Entry> entries;
+    
+    public VerifiedTokenCache(VerifiedTokenCacheProperties properties, MeterRegistry registry) {
+        this.enabled = properties.isEnabled();
+        this.entries = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfter(new Expiry<String, Entry>() {
+                @Override
+                public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                    return Math.max(0, Duration.between(Instant.now(), entry.expiresAt()).toNanos());
+                }
+                
+                @Override
+                public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, entry, currentTime);
+                }
+                
+                @Override
+                public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+        
+        CaffeineCacheMetrics.monitor(registry, entries, "jwt.tokens");
+    }
+    
+    @Nullable
+    public TokenClaims get(String token) {
+        if(!enabled) {
+            return null;
+        }
+        
+        Entry entry = entries.getIfPresent(signature(token));
+        return entry != null && entry.token().equals(token) ? entry.claims() : null;
+    }
+    
+    public void put(String token, TokenClaims claims, Instant expiresAt) {
+        if(enabled) {
+            entries.put(signature(token), new Entry(token, claims, expiresAt));
+        }
+    }
+    
+    private static String signature(String token) {
+        return token.substring(token.lastIndexOf('.') + 1);
+    }
+}
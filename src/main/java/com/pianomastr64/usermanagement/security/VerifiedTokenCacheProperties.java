@@ -0,0 +1,26 @@
+package com.pianomastr64.usermanagement.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.token-cache")
+public class VerifiedTokenCacheProperties {
+    /**
+     * Enables or disables caching of verified tokens.
+     */
+    private boolean enabled = true;
+    
+    /**
+     * Maximum number of verified tokens kept in memory.
+     */
+    private long maximumSize = 10_000;
+    
+    public boolean isEnabled() {return enabled;}
+    
+    public void setEnabled(boolean enabled) {this.enabled = enabled;}
+    
+    public long getMaximumSize() {return maximumSize;}
+    
+    public void setMaximumSize(long maximumSize) {this.maximumSize = maximumSize;}
+}
@@ -0,0 +1,6 @@
+package com.pianomastr64.usermanagement.user;
+
+/**
+ * @param affected number of users deleted or updated
+ */
+public record BulkResult(int affected) {}
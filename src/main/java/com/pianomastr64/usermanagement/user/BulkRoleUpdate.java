@@ -0,0 +1,18 @@
+package com.pianomastr64.usermanagement.user;
+
+import com.pianomastr64.usermanagement.user.validation.ValidEnum;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * @param users which users to update
+ * @param role  the role to give them
+ */
+public record BulkRoleUpdate(
+    @NotNull @Valid
+    UserSelector users,
+    
+    @NotNull
+    @ValidEnum(enumClass = Role.class)
+    String role
+) {}
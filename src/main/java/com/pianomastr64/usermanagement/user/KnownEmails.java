@@ -0,0 +1,148 @@
+package com.pianomastr64.usermanagement.user;
+
+import com.pianomastr64.usermanagement.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Answers "is this email already in use?" without a query in the common case where it isn't.
+ *
+ * <p>A Bloom filter of normalized emails is checked first. Only when it reports a possible hit is the
+ * {@code users} table consulted. The filter is warmed at startup, updated as users are created or change their
+ * email, and rebuilt every {@code user.email-filter.rebuild-interval}, which drops deleted emails and picks up
+ * ones added by other instances. An email added elsewhere since the last rebuild can slip past the filter,
+ * so the unique constraint on {@code users.email} remains the final guard.</p>
+ *
+ * <p>Checks are counted in {@code user.email.checks}, tagged by outcome. The filter's expected false-positive
+ * rate and size are published as {@code user.email.filter.fpp} and {@code user.email.filter.size}.</p>
+ */
+@Component
+public class KnownEmails {
+    private final UserRepository repo;
+    private final KnownEmailsProperties properties;
+    private final TransactionTemplate readOnlyTransaction;
+    
+    private volatile BloomFilter filter;
+    // Emails added since the last rebuild started, replayed into the next filter in case the rebuild's query missed them
+    private final Set<String> recentlyAdded = ConcurrentHashMap.newKeySet();
+    
+    private final Counter negative;
+    private final Counter taken;
+    private final Counter falsePositive;
+    
+    public KnownEmails(
+        UserRepository repo,
+        KnownEmailsProperties properties,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry registry
+    ) {
+        this.repo = repo;
+        this.properties = properties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.filter = new BloomFilter(properties.getExpectedEmails(), properties.getFalsePositiveRate());
+        
+        this.negative = checks(registry, "negative");
+        this.taken = checks(registry, "taken");
+        this.falsePositive = checks(registry, "false_positive");
+        Gauge.builder("user.email.filter.fpp", this, emails -> emails.filter.expectedFalsePositiveRate())
+            .description("Expected false-positive rate of the known-email filter")
+            .register(registry);
+        Gauge.builder("user.email.filter.size", this, emails -> emails.filter.sizeInBytes())
+            .description("Memory used by the known-email filter")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+    
+    private static Counter checks(MeterRegistry registry, String result) {
+        return Counter.builder("user.email.checks")
+            .tag("result", result)
+            .register(registry);
+    }
+    
+    @PostConstruct
+    void warmUp() {
+        rebuild();
+    }
+    
+    @Scheduled(fixedDelayString = "${user.email-filter.rebuild-interval:PT10M}")
+    public void rebuild() {
+        recentlyAdded.clear();
+        long expected = Math.max(properties.getExpectedEmails(), repo.count() * 2);
+        BloomFilter next = new BloomFilter(expected, properties.getFalsePositiveRate());
+        
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try(Stream<String> emails = repo.streamAllNormalizedEmails()) {
+                emails.forEach(next::put);
+            }
+        });
+        // Replay before publishing, so an email registered while the filter was built is never reported free,
+        // and again after, for any registered between the replay and the publish
+        recentlyAdded.forEach(next::put);
+        filter = next;
+        
+        recentlyAdded.forEach(next::put);
+    }
+    
+    public void add(String email) {
+        String normalized = User.normalizeEmail(email);
+        recentlyAdded.add(normalized);
+        filter.put(normalized);
+    }
+    
+    public void addAll(Collection<String> emails) {
+        emails.forEach(this::add);
+    }
+    
+    public boolean isTaken(@Nullable String email) {
+        return email != null && mightBeTaken(email) && confirm(repo.existsByEmail(email));
+    }
+    
+    /**
+     * Like {@link #isTaken(String)}, but ignores the user with the given id, e.g. the one being updated.
+     */
+    public boolean isTakenByOther(@Nullable String email, Long id) {
+        return email != null && mightBeTaken(email) && confirm(repo.existsByEmailAndIdNot(email, id));
+    }
+    
+    /**
+     * @return those of {@code emails} that are already in use
+     */
+    public List<String> findTaken(Collection<String> emails) {
+        List<String> candidates = emails.stream()
+            .filter(this::mightBeTaken)
+            .toList();
+        if(candidates.isEmpty()) {
+            return List.of();
+        }
+        
+        List<String> found = repo.findExistingEmails(candidates);
+        taken.increment(found.size());
+        falsePositive.increment(candidates.size() - found.size());
+        return found;
+    }
+    
+    private boolean mightBeTaken(String email) {
+        if(filter.mightContain(User.normalizeEmail(email))) {
+            return true;
+        }
+        negative.increment();
+        return false;
+    }
+    
+    private boolean confirm(boolean exists) {
+        (exists ? taken : falsePositive).increment();
+        return exists;
+    }
+}
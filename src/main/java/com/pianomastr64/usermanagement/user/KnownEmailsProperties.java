@@ -0,0 +1,38 @@
+package com.pianomastr64.usermanagement.user;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "user.email-filter")
+public class KnownEmailsProperties {
+    /**
+     * Number of emails the filter is sized for. It is sized for twice the current number of users if that's larger.
+     */
+    private long expectedEmails = 1_000_000;
+    
+    /**
+     * Target false-positive rate of the filter. Every false positive costs one database query.
+     */
+    private double falsePositiveRate = 0.01;
+    
+    /**
+     * How often the filter is rebuilt from the database, which drops deleted or changed emails
+     * and picks up ones added by other instances.
+     */
+    private Duration rebuildInterval = Duration.ofMinutes(10);
+    
+    public long getExpectedEmails() {return expectedEmails;}
+    
+    public void setExpectedEmails(long expectedEmails) {this.expectedEmails = expectedEmails;}
+    
+    public double getFalsePositiveRate() {return falsePositiveRate;}
+    
+    public void setFalsePositiveRate(double falsePositiveRate) {this.falsePositiveRate = falsePositiveRate;}
+    
+    public Duration getRebuildInterval() {return rebuildInterval;}
+    
+    public void setRebuildInterval(Duration rebuildInterval) {this.rebuildInterval = rebuildInterval;}
+}
@@ -2,12 +2,21 @@ package com.pianomastr64.usermanagement.user;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.util.Locale;
 
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
 public class User {
+    public static final String CACHE_REGION = "users";
+    
+    // A pooled sequence rather than IDENTITY, which would stop Hibernate from batching inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -18,6 +27,10 @@ public class User {
     @Column(unique = true, nullable = false)
     private String email;
     
+    // Kept in step with email by setEmail; login and uniqueness checks look users up by this column
+    @Column(nullable = false, unique = true)
+    private String emailNormalized;
+    
     @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @Column(nullable = false)
     private String passwordHash;
@@ -26,11 +39,23 @@ public class User {
     @Column(nullable = false, length = 20)
     private Role role = Role.USER;
     
+    // Bumped on every update; guards against lost updates and doubles as the ETag
+    @Version
+    @Column(nullable = false)
+    private long version;
+    
     public User() {}
     
+    /**
+     * Canonical form used to compare emails, so that {@code Jane@Example.com } and {@code jane@example.com} match.
+     */
+    public static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+    
     public User(String name, String email, String passwordHash, Role role) {
         this.name = name;
-        this.email = email;
+        setEmail(email);
         this.passwordHash = passwordHash;
         this.role = role;
     }
@@ -54,6 +79,11 @@ public class User {
     
     public void setEmail(String email) {
         this.email = email;
+        this.emailNormalized = email != null ? normalizeEmail(email) : null;
+    }
+    
+    public String getEmailNormalized() {
+        return emailNormalized;
     }
     
     public String getPasswordHash() {
@@ -71,4 +101,8 @@ public class User {
     public void setRole(Role role) {
         this.role = role;
     }
+    
+    public long getVersion() {
+        return version;
+    }
 }
@@ -1,17 +1,40 @@
 package com.pianomastr64.usermanagement.user;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pianomastr64.usermanagement.exception.VersionMismatchException;
 import com.pianomastr64.usermanagement.security.AuthorizationSpEL;
 import com.pianomastr64.usermanagement.security.CurrentUserId;
 import com.pianomastr64.usermanagement.user.validation.OnCreate;
+import com.pianomastr64.usermanagement.user.validation.ValidEnum;
+import com.pianomastr64.usermanagement.util.Csv;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 
 @RestController
@@ -19,10 +42,18 @@ import java.util.List;
 @Validated
 public class UserController {
     
+    private static final MediaType CSV = MediaType.parseMediaType(Csv.MEDIA_TYPE_VALUE);
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    // Formats a UserDTO can be written in, in the order the message converters are registered
+    private static final List<MediaType> REPRESENTATIONS = List.of(MediaType.APPLICATION_JSON, SMILE, MediaType.APPLICATION_CBOR);
+    
     private final UserService service;
+    private final ObjectMapper objectMapper;
     
-    public UserController(UserService service) {
+    public UserController(UserService service, ObjectMapper objectMapper) {
         this.service = service;
+        this.objectMapper = objectMapper;
     }
     
     @PostMapping
@@ -42,40 +73,247 @@ public class UserController {
     @PreAuthorize(AuthorizationSpEL.ADMIN_OR_SELF)
     public ResponseEntity<UserDTO> getUser(@PathVariable Long id) {
         return service.getUser(id)
-            .map(ResponseEntity::ok)
+            .map(UserController::withETag)
             .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
     @GetMapping("/me")
     public ResponseEntity<UserDTO> getCurrentUser(@CurrentUserId Long id) {
         return service.getUser(id)
-            .map(ResponseEntity::ok)
+            .map(UserController::withETag)
             .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
-    @GetMapping
+    /**
+     * Lists users a page at a time. Pass the returned {@code nextCursor} as {@code after} to get the next page.
+     *
+     * <p>Like the other user endpoints, it also speaks Smile ({@code application/x-jackson-smile}) and CBOR
+     * ({@code application/cbor}) for clients that ask for them in {@code Accept} or {@code Content-Type}.</p>
+     *
+     * <p>Also declares the wildcard type so that requests without an explicit {@code Accept}
+     * header land here rather than on {@link #streamAllUsers()}.</p>
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.ALL_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserPage> getAllUsers(
+        @RequestParam(defaultValue = "id") @ValidEnum(enumClass = UserSort.class) String sort,
+        @RequestParam(required = false) String after,
+        @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit
+    ) {
+        UserPage page = service.getAllUsers(UserSort.valueOf(sort.toUpperCase()), after, limit);
+        return page.users().isEmpty() && after == null
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.ok(page);
+    }
+    
+    /**
+     * Streams every user as newline-delimited JSON. Memory use stays flat regardless of the number of users.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            // Leave flushing to the servlet's buffer instead of flushing after every user
+            ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            
+            service.forEachUser(null, dto -> {
+                try {
+                    writer.writeValue(generator, dto);
+                    generator.writeRaw('\n');
+                } catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.flush();
+        };
+        
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(body);
+    }
+    
+    /**
+     * Finds users whose name or email contains {@code q}, ignoring case. With {@code prefix=true}, only
+     * names or emails that start with {@code q} match. Results are ordered by id; pass the returned
+     * {@code nextCursor} as {@code after} to get the next page.
+     *
+     * <p>{@code q} must be at least {@value UserSearchIndex#MIN_QUERY_LENGTH} characters once trimmed: shorter
+     * queries can't use the trigram index and would scan every user.</p>
+     */
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserPage> searchUsers(
+        @RequestParam @NotBlank @Size(max = 255) String q,
+        @RequestParam(defaultValue = "false") boolean prefix,
+        @RequestParam(required = false) String after,
+        @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit
+    ) {
+        return ResponseEntity.ok(service.searchUsers(q, prefix, after, limit));
+    }
+    
+    /**
+     * Exports users as CSV for reporting, optionally only those with the given role.
+     * With {@code gzip=true} the file is sent gzip-compressed, as {@code users.csv.gz}.
+     */
+    @GetMapping("/export")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<UserDTO>> getAllUsers() {
-        List<UserDTO> dtos = service.getAllUsers();
-        return dtos.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok(dtos);
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+        @RequestParam(required = false) @ValidEnum(enumClass = Role.class) String role,
+        @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        Role roleFilter = role != null ? Role.valueOf(role.toUpperCase()) : null;
+        StreamingResponseBody body = out -> {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, 8192) : null;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                compressed != null ? compressed : out, StandardCharsets.UTF_8));
+            
+            writer.write(Csv.formatLine("id", "name", "email", "role"));
+            writer.write("\r\n");
+            service.forEachUser(roleFilter, dto -> {
+                try {
+                    // Names and emails are user-supplied, so they must not open as formulas
+                    writer.write(Csv.formatLine(
+                        dto.id().toString(), Csv.escapeFormula(dto.name()), Csv.escapeFormula(dto.email()), dto.role().name()));
+                    writer.write("\r\n");
+                } catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            if(compressed != null) {
+                compressed.finish();
+            }
+        };
+        
+        ContentDisposition disposition = ContentDisposition.attachment()
+            .filename(gzip ? "users.csv.gz" : "users.csv")
+            .build();
+        return ResponseEntity.ok()
+            .contentType(gzip ? GZIP : CSV)
+            .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+            .body(body);
     }
     
     @PatchMapping("/{id}")
     @PreAuthorize(AuthorizationSpEL.ADMIN_OR_SELF)
-    public ResponseEntity<UserDTO> updateUserPartial(@PathVariable Long id, @RequestBody @Validated UserInputDTO user) {
-        return service.updateUser(id, user)
-            .map(ResponseEntity::ok)
+    public ResponseEntity<UserDTO> updateUserPartial(
+        @PathVariable Long id,
+        @RequestBody @Validated UserInputDTO user,
+        @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) @Nullable String ifMatch
+    ) {
+        return service.updateUser(id, user, expectedVersion(ifMatch))
+            .map(UserController::withETag)
             .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<UserDTO> updateUserFull(@PathVariable Long id, @RequestBody @Validated(OnCreate.class) UserInputDTO user) {
-        return service.updateUser(id, user)
-            .map(ResponseEntity::ok)
+    public ResponseEntity<UserDTO> updateUserFull(
+        @PathVariable Long id,
+        @RequestBody @Validated(OnCreate.class) UserInputDTO user,
+        @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) @Nullable String ifMatch
+    ) {
+        return service.updateUser(id, user, expectedVersion(ifMatch))
+            .map(UserController::withETag)
             .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
+    /**
+     * Tags the response with the user's version. For a GET whose {@code If-None-Match} names that version,
+     * Spring MVC answers 304 without writing the body.
+     *
+     * <p>The same version is served as JSON, Smile or CBOR, which are different bytes, so each gets its own
+     * strong ETag: the version for JSON, suffixed with {@code -smile} or {@code -cbor} for the others. The
+     * response varies by {@code Accept} so shared caches keep the formats apart.</p>
+     */
+    private static ResponseEntity<UserDTO> withETag(UserDTO user) {
+        MediaType representation = negotiatedRepresentation();
+        String suffix = representation.equals(MediaType.APPLICATION_JSON) ? "" : "-" + formatName(representation);
+        return ResponseEntity.ok()
+            .eTag(user.version() + suffix)
+            .varyBy(HttpHeaders.ACCEPT)
+            .body(user);
+    }
+    
+    private static String formatName(MediaType representation) {
+        return representation.equals(SMILE) ? "smile" : "cbor";
+    }
+    
+    /**
+     * The representation the message converters will pick for the current request's {@code Accept} header:
+     * the first of {@link #REPRESENTATIONS} compatible with the most preferred accepted type.
+     */
+    private static MediaType negotiatedRepresentation() {
+        if(!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return MediaType.APPLICATION_JSON;
+        }
+        String accept = attributes.getRequest().getHeader(HttpHeaders.ACCEPT);
+        if(accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        
+        try {
+            List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(accepted);
+            for(MediaType requested : accepted) {
+                for(MediaType representation : REPRESENTATIONS) {
+                    if(requested.isCompatibleWith(representation)) {
+                        return representation;
+                    }
+                }
+            }
+        } catch(InvalidMediaTypeException e) {
+            // Spring MVC rejects the request before the body is written
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+    
+    /**
+     * @return the version an {@code If-Match} header requires, or null for none or {@code *}
+     */
+    @Nullable
+    private static Long expectedVersion(@Nullable String ifMatch) {
+        if(ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        
+        // If-Match uses strong comparison, so weak or malformed tags can never match
+        String etag = ifMatch.trim();
+        if(etag.length() < 3 || !etag.startsWith("\"") || !etag.endsWith("\"")) {
+            throw new VersionMismatchException("If-Match must be a single strong ETag from this resource");
+        }
+        // Any format's tag names the version it was read at
+        String version = etag.substring(1, etag.length() - 1);
+        for(MediaType representation : REPRESENTATIONS.subList(1, REPRESENTATIONS.size())) {
+            String suffix = "-" + formatName(representation);
+            if(version.endsWith(suffix)) {
+                version = version.substring(0, version.length() - suffix.length());
+                break;
+            }
+        }
+        try {
+            return Long.parseLong(version);
+        } catch(NumberFormatException e) {
+            throw new VersionMismatchException("If-Match must be a single strong ETag from this resource");
+        }
+    }
+    
+    @DeleteMapping("/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkResult> deleteUsers(@RequestBody @Valid UserSelector users) {
+        return ResponseEntity.ok(new BulkResult(service.deleteUsers(users)));
+    }
+    
+    @PatchMapping("/bulk/role")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkResult> updateRoles(@RequestBody @Valid BulkRoleUpdate update) {
+        Role role = Role.valueOf(update.role().toUpperCase());
+        return ResponseEntity.ok(new BulkResult(service.updateRoles(update.users(), role)));
+    }
+    
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
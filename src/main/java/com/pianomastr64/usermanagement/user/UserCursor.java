@@ -0,0 +1,43 @@
+package com.pianomastr64.usermanagement.user;
+
+import com.pianomastr64.usermanagement.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last user on a page: the sort it was produced by, its id and its sort key.
+ * Serialized as an opaque URL-safe string so clients don't depend on the format.
+ */
+record UserCursor(UserSort sort, long id, String key) {
+    
+    static UserCursor after(UserSort sort, UserDTO user) {
+        String key = switch(sort) {
+            case ID -> "";
+            case NAME -> user.name();
+            case EMAIL -> user.email();
+        };
+        return new UserCursor(sort, user.id(), key);
+    }
+    
+    String encode() {
+        String raw = sort.name() + "|" + id + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    static UserCursor decode(String cursor, UserSort expectedSort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            UserCursor decoded = new UserCursor(UserSort.valueOf(parts[0]), Long.parseLong(parts[1]), parts[2]);
+            
+            if(decoded.sort() != expectedSort) {
+                throw new InvalidCursorException("Cursor was created for sort '" + decoded.sort().name().toLowerCase()
+                    + "' and can't be used with sort '" + expectedSort.name().toLowerCase() + "'");
+            }
+            return decoded;
+        } catch(IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -1,3 +1,8 @@
 package com.pianomastr64.usermanagement.user;
 
-public record UserDTO(Long id, String name, String email, Role role) {}
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * @param version sent as the {@code ETag} header rather than in the body
+ */
+public record UserDTO(Long id, String name, String email, Role role, @JsonIgnore long version) {}
@@ -0,0 +1,84 @@
+package com.pianomastr64.usermanagement.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of {@link UserDTO}s by id, so repeated single-user reads skip JPA and mapping entirely.
+ *
+ * <p>Entries expire after {@code user.dto-cache.ttl}, and at most {@code user.dto-cache.maximum-size} users
+ * are kept. Anything that changes a user must call {@link #invalidate(Long)}; new users may be
+ * {@link #put(UserDTO) put} straight away.</p>
+ *
+ * <p>Hit, miss and eviction counts are published as the {@code user.service.dto} cache metrics.</p>
+ */
+@Component
+public class UserDtoCache {
+    private final Cache<Long, UserDTO> dtos;
+    
+    public UserDtoCache(UserDtoCacheProperties properties, MeterRegistry registry) {
+        this.dtos = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getTtl())
+            .recordStats()
+            .build();
+        
+        CaffeineCacheMetrics.monitor(registry, dtos, "user.service.dto");
+    }
+    
+    /**
+     * @return the cached user, or whatever {@code loader} finds, which is cached unless empty
+     */
+    public Optional<UserDTO> get(Long id, Function<Long, Optional<UserDTO>> loader) {
+        return Optional.ofNullable(dtos.get(id, key -> loader.apply(key).orElse(null)));
+    }
+    
+    public void put(UserDTO user) {
+        dtos.put(user.id(), user);
+    }
+    
+    public void invalidate(Long id) {
+        invalidateAll(List.of(id));
+    }
+    
+    /**
+     * Evicts the users now and, inside a transaction, again once it completes, in case a concurrent read
+     * cached the old rows before the change was committed.
+     */
+    public void invalidateAll(Collection<Long> ids) {
+        dtos.invalidateAll(ids);
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    dtos.invalidateAll(ids);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Like {@link #invalidateAll(Collection)}, but for every user, for changes that can't name the users they affect.
+     */
+    public void invalidateAll() {
+        dtos.invalidateAll();
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    dtos.invalidateAll();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.pianomastr64.usermanagement.user;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "user.dto-cache")
+public class UserDtoCacheProperties {
+    /**
+     * Maximum number of users kept in memory.
+     */
+    private long maximumSize = 10_000;
+    
+    /**
+     * How long a cached user is served before it is read again. Bounds how stale a user changed by another
+     * instance can be.
+     */
+    private Duration ttl = Duration.ofMinutes(1);
+    
+    public long getMaximumSize() {return maximumSize;}
+    
+    public void setMaximumSize(long maximumSize) {this.maximumSize = maximumSize;}
+    
+    public Duration getTtl() {return ttl;}
+    
+    public void setTtl(Duration ttl) {this.ttl = ttl;}
+}
@@ -12,6 +12,12 @@ public interface UserMapper {
     @Mapping(target = "passwordHash", ignore = true)
     User createFromDto(UserInputDTO userDTO, @Context PasswordEncoder passwordEncoder);
     
+    /**
+     * Leaves the password hash unset, for callers that hash passwords themselves (e.g. in bulk).
+     */
+    @Mapping(target = "passwordHash", ignore = true)
+    User createFromDtoWithoutPassword(UserInputDTO userDTO);
+    
     @Mapping(target = "passwordHash", ignore = true)
     @Mapping(target = "role", constant = "USER")
     User createFromDto(RegisterRequest userDTO, @Context PasswordEncoder passwordEncoder);
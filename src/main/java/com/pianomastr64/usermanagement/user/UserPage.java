@@ -0,0 +1,11 @@
+package com.pianomastr64.usermanagement.user;
+
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * @param users      The users on this page
+ * @param nextCursor Pass as {@code after} to get the next page; null on the last page
+ */
+public record UserPage(List<UserDTO> users, @Nullable String nextCursor) {}
@@ -1,21 +1,153 @@
 package com.pianomastr64.usermanagement.user;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
+// Reads run in read-only transactions so that, with replica routing on, they can be served by a replica.
+// Inherited writes such as save and deleteById keep their own read-write transactions.
 @Repository
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByEmail(String email);
+    // Emails are compared case-insensitively through the unique email_normalized column,
+    // so each lookup is still a single index seek
     
-    boolean existsByEmail(String email);
+    Optional<User> findByEmailNormalized(String emailNormalized);
     
-    boolean existsByEmailAndIdNot(String email, Long id);
+    boolean existsByEmailNormalized(String emailNormalized);
     
-    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
-    List<String> findExistingEmails(@Param("emails") List<String> emails);
+    boolean existsByEmailNormalizedAndIdNot(String emailNormalized, Long id);
+    
+    @Query("SELECT u.emailNormalized FROM User u WHERE u.emailNormalized IN :emails")
+    List<String> findExistingNormalizedEmails(@Param("emails") List<String> normalizedEmails);
+    
+    default Optional<User> findByEmail(String email) {
+        return findByEmailNormalized(User.normalizeEmail(email));
+    }
+    
+    /**
+     * Loads the user for a password check. The second-level cache is bypassed, because each instance has its
+     * own: a password changed or a user deleted through another instance must not keep working here until the
+     * cached entry expires. A row with a newer version than the cached one also replaces it in the cache.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "REFRESH"))
+    @Query("SELECT u FROM User u WHERE u.emailNormalized = :emailNormalized")
+    Optional<User> findCredentialsByEmailNormalized(@Param("emailNormalized") String emailNormalized);
+    
+    default Optional<User> findCredentialsByEmail(String email) {
+        return findCredentialsByEmailNormalized(User.normalizeEmail(email));
+    }
+    
+    default boolean existsByEmail(String email) {
+        return existsByEmailNormalized(User.normalizeEmail(email));
+    }
+    
+    default boolean existsByEmailAndIdNot(String email, Long id) {
+        return existsByEmailNormalizedAndIdNot(User.normalizeEmail(email), id);
+    }
+    
+    /**
+     * @return those of {@code emails} that belong to an existing user, ignoring case
+     */
+    default List<String> findExistingEmails(List<String> emails) {
+        Set<String> existing = new HashSet<>(findExistingNormalizedEmails(emails.stream()
+            .map(User::normalizeEmail)
+            .toList()));
+        return emails.stream()
+            .filter(email -> existing.contains(User.normalizeEmail(email)))
+            .toList();
+    }
+    
+    /**
+     * Must be called inside a transaction and closed afterward.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.emailNormalized FROM User u")
+    Stream<String> streamAllNormalizedEmails();
+    
+    // Read paths project straight into UserDTO, so no managed entity, dirty-checking snapshot
+    // or password hash is ever loaded for them.
+    String SELECT_DTO = "SELECT new com.pianomastr64.usermanagement.user.UserDTO(u.id, u.name, u.email, u.role, u.version) FROM User u";
+    
+    @Query(SELECT_DTO + " WHERE u.id = :id")
+    Optional<UserDTO> findDtoById(@Param("id") Long id);
+    
+    @Query(SELECT_DTO + " WHERE u.id IN :ids ORDER BY u.id")
+    List<UserDTO> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT u.role FROM User u WHERE u.id = :id")
+    Optional<Role> findRoleById(@Param("id") Long id);
+    
+    // Keyset pagination. The leading ">=" lets the database range-scan the (sort column, id) index,
+    // so every page costs the same no matter how deep it is.
+    
+    @Query(SELECT_DTO + " ORDER BY u.id")
+    List<UserDTO> findFirstPageOrderedById(Limit limit);
+    
+    @Query(SELECT_DTO + " WHERE u.id > :afterId ORDER BY u.id")
+    List<UserDTO> findPageOrderedById(@Param("afterId") Long afterId, Limit limit);
+    
+    @Query(SELECT_DTO + " ORDER BY u.name, u.id")
+    List<UserDTO> findFirstPageOrderedByName(Limit limit);
+    
+    @Query(SELECT_DTO
+        + " WHERE u.name >= :name AND (u.name > :name OR u.id > :afterId)"
+        + " ORDER BY u.name, u.id")
+    List<UserDTO> findPageOrderedByName(@Param("name") String name, @Param("afterId") Long afterId, Limit limit);
+    
+    @Query(SELECT_DTO + " ORDER BY u.email, u.id")
+    List<UserDTO> findFirstPageOrderedByEmail(Limit limit);
+    
+    @Query(SELECT_DTO
+        + " WHERE u.email >= :email AND (u.email > :email OR u.id > :afterId)"
+        + " ORDER BY u.email, u.id")
+    List<UserDTO> findPageOrderedByEmail(@Param("email") String email, @Param("afterId") Long afterId, Limit limit);
+    
+    // Set-based writes for bulk operations. They bypass the persistence context, so callers
+    // must invalidate anything cached about the affected users themselves.
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM User u WHERE u.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM User u WHERE u.role = :role")
+    int deleteAllByRole(@Param("role") Role role);
+    
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE User u SET u.role = :role, u.version = u.version + 1 WHERE u.id IN :ids")
+    int updateRoleByIdIn(@Param("ids") Collection<Long> ids, @Param("role") Role role);
+    
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE User u SET u.role = :role, u.version = u.version + 1 WHERE u.role = :currentRole")
+    int updateRoleByRole(@Param("currentRole") Role currentRole, @Param("role") Role role);
+    
+    /**
+     * Streams users with a forward-only cursor. Must be called inside a transaction and closed afterward.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_DTO + " ORDER BY u.id")
+    Stream<UserDTO> streamAllOrderedById();
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_DTO + " WHERE u.role = :role ORDER BY u.id")
+    Stream<UserDTO> streamByRoleOrderedById(@Param("role") Role role);
 }
@@ -0,0 +1,292 @@
+package com.pianomastr64.usermanagement.user;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory trigram index over users' names and emails, for substring and prefix search.
+ *
+ * <p>Each user is indexed under every three-character sequence of its lower-cased name and email. A query
+ * walks the shortest posting list among its own trigrams and checks each candidate against the query, so even
+ * common terms only touch as many users as the page needs. Posting lists are sorted by user id, which gives
+ * stable id-ordered paging. Queries shorter than {@value #MIN_QUERY_LENGTH} characters have no trigram and fall
+ * back to scanning every user, so the search endpoint refuses them.</p>
+ *
+ * <p>The index is built at startup, kept in step by {@link UserServiceImpl} and registration, and rebuilt every
+ * {@code user.search.rebuild-interval} to pick up writes made by other instances. It holds ids and search text
+ * only; callers load the matching users from the database. The number of indexed users is published as
+ * {@code user.search.index.size}.</p>
+ */
+@Component
+public class UserSearchIndex {
+    public static final int MIN_QUERY_LENGTH = 3;
+    
+    private final UserRepository repo;
+    private final TransactionTemplate readOnlyTransaction;
+    
+    private volatile Index current = new Index();
+    // Writes made while a rebuild runs, replayed onto the new index before it replaces the current one
+    @Nullable private List<Consumer<Index>> pending;
+    private final Object writeLock = new Object();
+    
+    public UserSearchIndex(UserRepository repo, PlatformTransactionManager transactionManager, MeterRegistry registry) {
+        this.repo = repo;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Its own transaction, so a rebuild after a commit reads what was committed
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        
+        Gauge.builder("user.search.index.size", this, index -> index.current.size())
+            .description("Users in the search index")
+            .register(registry);
+    }
+    
+    @PostConstruct
+    void warmUp() {
+        rebuild();
+    }
+    
+    @Scheduled(fixedDelayString = "${user.search.rebuild-interval:PT10M}")
+    public void rebuild() {
+        synchronized(writeLock) {
+            pending = new ArrayList<>();
+        }
+        
+        Index next = new Index();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try(Stream<UserDTO> users = repo.streamAllOrderedById()) {
+                users.forEach(user -> next.put(user.id(), searchText(user.name(), user.email())));
+            }
+        });
+        
+        synchronized(writeLock) {
+            pending.forEach(change -> change.accept(next));
+            pending = null;
+            current = next;
+        }
+    }
+    
+    /**
+     * Rebuilds once the current transaction commits, or right away outside one. For changes that can't name the
+     * users they affect, e.g. a role-wide delete.
+     */
+    public void rebuildAfterCommit() {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            rebuild();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                rebuild();
+            }
+        });
+    }
+    
+    public void put(Long id, String name, String email) {
+        String text = searchText(name, email);
+        apply(index -> index.put(id, text));
+    }
+    
+    public void remove(Long id) {
+        apply(index -> index.remove(id));
+    }
+    
+    private void apply(Consumer<Index> change) {
+        synchronized(writeLock) {
+            change.accept(current);
+            if(pending != null) {
+                pending.add(change);
+            }
+        }
+    }
+    
+    /**
+     * @param query  matched case-insensitively
+     * @param prefix match only the start of the name or email rather than anywhere in them
+     * @param after  only return ids greater than this, for paging
+     * @return up to {@code limit} matching user ids, in ascending order
+     */
+    public List<Long> search(String query, boolean prefix, @Nullable Long after, int limit) {
+        String needle = query.trim().toLowerCase(Locale.ROOT);
+        return current.search(needle, prefix, after != null ? after : Long.MIN_VALUE, limit);
+    }
+    
+    // Name and email joined by a character that can't appear in a query, so prefix checks can find the email's start
+    private static String searchText(String name, String email) {
+        return name.toLowerCase(Locale.ROOT) + '\n' + email.toLowerCase(Locale.ROOT);
+    }
+    
+    private static long trigram(String text, int start) {
+        return (long) text.charAt(start) << 32 | (long) text.charAt(start + 1) << 16 | text.charAt(start + 2);
+    }
+    
+    private static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        for(int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(trigram(text, i));
+        }
+        return trigrams;
+    }
+    
+    private static boolean matches(String text, String needle, boolean prefix) {
+        return prefix
+            ? text.startsWith(needle) || text.contains('\n' + needle)
+            : text.contains(needle);
+    }
+    
+    /**
+     * One generation of the index. Writes are serialized by {@link #writeLock}; the read-write lock only keeps
+     * searches from seeing a half-applied write.
+     */
+    private static class Index {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final NavigableMap<Long, String> texts = new TreeMap<>();
+        private final Map<Long, SortedIds> postings = new HashMap<>();
+        
+        int size() {
+            lock.readLock().lock();
+            try {
+                return texts.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        
+        void put(Long id, String text) {
+            lock.writeLock().lock();
+            try {
+                String previous = texts.put(id, text);
+                Set<Long> added = trigrams(text);
+                if(previous != null) {
+                    Set<Long> removed = trigrams(previous);
+                    removed.removeAll(added);
+                    removed.forEach(trigram -> removePosting(trigram, id));
+                    added.removeAll(trigrams(previous));
+                }
+                added.forEach(trigram -> postings.computeIfAbsent(trigram, key -> new SortedIds()).add(id));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        void remove(Long id) {
+            lock.writeLock().lock();
+            try {
+                String previous = texts.remove(id);
+                if(previous != null) {
+                    trigrams(previous).forEach(trigram -> removePosting(trigram, id));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        private void removePosting(long trigram, long id) {
+            SortedIds ids = postings.get(trigram);
+            if(ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(trigram);
+            }
+        }
+        
+        List<Long> search(String needle, boolean prefix, long after, int limit) {
+            lock.readLock().lock();
+            try {
+                List<Long> found = new ArrayList<>(Math.min(limit, 64));
+                if(needle.length() < MIN_QUERY_LENGTH) {
+                    for(Map.Entry<Long, String> entry : texts.tailMap(after, false).entrySet()) {
+                        if(matches(entry.getValue(), needle, prefix)) {
+                            found.add(entry.getKey());
+                            if(found.size() == limit) {
+                                break;
+                            }
+                        }
+                    }
+                    return found;
+                }
+                
+                SortedIds shortest = null;
+                for(long trigram : trigrams(needle)) {
+                    SortedIds ids = postings.get(trigram);
+                    if(ids == null) {
+                        return found;
+                    }
+                    if(shortest == null || ids.size() < shortest.size()) {
+                        shortest = ids;
+                    }
+                }
+                
+                for(int i = shortest.indexAfter(after); i < shortest.size() && found.size() < limit; i++) {
+                    long id = shortest.get(i);
+                    if(matches(texts.get(id), needle, prefix)) {
+                        found.add(id);
+                    }
+                }
+                return found;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+    
+    /**
+     * Growable sorted array of ids. New users have the highest ids, so adding is almost always an append.
+     */
+    private static class SortedIds {
+        private long[] ids = new long[4];
+        private int size;
+        
+        int size() {return size;}
+        
+        boolean isEmpty() {return size == 0;}
+        
+        long get(int index) {return ids[index];}
+        
+        void add(long id) {
+            int index = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if(index >= 0 && index < size) {
+                return; // already present
+            }
+            int insertAt = index >= 0 ? index : -index - 1;
+            if(size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+        
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if(index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+        
+        /**
+         * @return the position of the first id greater than {@code id}
+         */
+        int indexAfter(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.pianomastr64.usermanagement.user;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.pianomastr64.usermanagement.user.validation.ValidEnum;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Picks the users a bulk operation applies to: either the listed ids, or everyone with the given role.
+ */
+public record UserSelector(
+    @Size(max = 10_000)
+    List<@NotNull Long> ids,
+    
+    @ValidEnum(enumClass = Role.class)
+    String role
+) {
+    @JsonIgnore
+    @AssertTrue(message = "Specify either ids or role, not both")
+    public boolean isSingleCriterion() {
+        return (ids != null && !ids.isEmpty()) != (role != null);
+    }
+}
@@ -1,13 +1,23 @@
 package com.pianomastr64.usermanagement.user;
 
+import org.springframework.lang.Nullable;
+
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserService {
     UserDTO createUser(UserInputDTO dto);
     List<UserDTO> createUsers(List<UserInputDTO> dtos);
     Optional<UserDTO> getUser(Long id);
-    List<UserDTO> getAllUsers();
-    Optional<UserDTO> updateUser(Long id, UserInputDTO dto);
+    UserPage getAllUsers(UserSort sort, String after, int limit);
+    void forEachUser(Role role, Consumer<UserDTO> action);
+    UserPage searchUsers(String query, boolean prefix, String after, int limit);
+    /**
+     * @param expectedVersion if not null, the update is refused unless the user is still at this version
+     */
+    Optional<UserDTO> updateUser(Long id, UserInputDTO dto, @Nullable Long expectedVersion);
     boolean deleteUser(Long id);
+    int deleteUsers(UserSelector selector);
+    int updateRoles(UserSelector selector, Role role);
 }
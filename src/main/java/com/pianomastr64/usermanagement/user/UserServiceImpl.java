@@ -1,24 +1,55 @@
 package com.pianomastr64.usermanagement.user;
 
+import com.pianomastr64.usermanagement.datasource.ReadYourWrites;
 import com.pianomastr64.usermanagement.exception.DuplicateEmailException;
+import com.pianomastr64.usermanagement.exception.InvalidSearchQueryException;
+import com.pianomastr64.usermanagement.exception.VersionMismatchException;
+import com.pianomastr64.usermanagement.security.BoundedPasswordEncoder;
+import com.pianomastr64.usermanagement.security.PrincipalCache;
 import io.micrometer.core.annotation.Timed;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.domain.Limit;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Timed(value = "user.service.method.time")
 @Service
 public class UserServiceImpl implements UserService {
+    // Keeps each bulk statement's IN list to a size every database accepts
+    private static final int BULK_BATCH_SIZE = 1_000;
+    
     private final UserRepository repo;
     private final UserMapper mapper;
-    private final PasswordEncoder passwordEncoder;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
+    private final KnownEmails knownEmails;
+    private final UserSearchIndex searchIndex;
+    private final UserDtoCache dtoCache;
+    private final ReadYourWrites readYourWrites;
     
-    public UserServiceImpl(UserRepository repo, UserMapper mapper, PasswordEncoder passwordEncoder) {
+    public UserServiceImpl(
+        UserRepository repo,
+        UserMapper mapper,
+        BoundedPasswordEncoder passwordEncoder,
+        PrincipalCache principalCache,
+        KnownEmails knownEmails,
+        UserSearchIndex searchIndex,
+        UserDtoCache dtoCache,
+        ReadYourWrites readYourWrites
+    ) {
         this.repo = repo;
         this.mapper = mapper;
         this.passwordEncoder = passwordEncoder;
+        this.principalCache = principalCache;
+        this.knownEmails = knownEmails;
+        this.searchIndex = searchIndex;
+        this.dtoCache = dtoCache;
+        this.readYourWrites = readYourWrites;
     }
     
     @Override
@@ -26,7 +57,13 @@ public class UserServiceImpl implements UserService {
         checkUniqueEmail(dto, null);
         
         User user = mapper.createFromDto(dto, passwordEncoder);
-        return mapper.toDTO(repo.save(user));
+        User saved = repo.save(user);
+        readYourWrites.recordWrite(saved.getId());
+        knownEmails.add(saved.getEmail());
+        searchIndex.put(saved.getId(), saved.getName(), saved.getEmail());
+        UserDTO created = mapper.toDTO(saved);
+        dtoCache.put(created);
+        return created;
     }
     
     @Override
@@ -34,26 +71,40 @@ public class UserServiceImpl implements UserService {
         checkUniqueEmailBulk(dtos);
         
         List<User> users = dtos.stream()
-            .map(dto -> mapper.createFromDto(dto, passwordEncoder))
+            .map(mapper::createFromDtoWithoutPassword)
             .toList();
         
+        // Hash on the password pool in parallel rather than one at a time on this thread
+        List<String> hashes = passwordEncoder.encodeAll(dtos.stream()
+            .map(UserInputDTO::password)
+            .toList());
+        for(int i = 0; i < users.size(); i++) {
+            users.get(i).setPasswordHash(hashes.get(i));
+        }
+        
         repo.saveAll(users);
+        readYourWrites.recordWrites(users.stream().map(User::getId).toList());
+        knownEmails.addAll(users.stream()
+            .map(User::getEmail)
+            .toList());
+        users.forEach(user -> searchIndex.put(user.getId(), user.getName(), user.getEmail()));
         
-        return users.stream()
+        List<UserDTO> created = users.stream()
             .map(mapper::toDTO)
             .toList();
+        created.forEach(dtoCache::put);
+        return created;
     }
     
     @Override
     public Optional<UserDTO> getUser(Long id) {
-        return repo.findById(id)
-            .map(mapper::toDTO);
+        return dtoCache.get(id, repo::findDtoById);
     }
     
     // Artificially choppy to make grafana dashboard and alerting more interesting
     private static final Random RANDOM = new Random();
     @Override
-    public List<UserDTO> getAllUsers() {
+    public UserPage getAllUsers(UserSort sort, @Nullable String after, int limit) {
         if(RANDOM.nextInt(3) == 0) {
             try {
                 Thread.sleep(RANDOM.nextInt(600, 4000)); // sleep between 1000 and 2000 ms
@@ -61,19 +112,93 @@ public class UserServiceImpl implements UserService {
                 Thread.currentThread().interrupt();
             }
         }
-        return repo.findAll().stream()
-            .map(mapper::toDTO)
-            .toList();
+        
+        UserCursor cursor = after != null ? UserCursor.decode(after, sort) : null;
+        // Fetch one extra row to find out whether there is a next page
+        Limit fetch = Limit.of(limit + 1);
+        
+        List<UserDTO> users = switch(sort) {
+            case ID -> cursor == null
+                ? repo.findFirstPageOrderedById(fetch)
+                : repo.findPageOrderedById(cursor.id(), fetch);
+            case NAME -> cursor == null
+                ? repo.findFirstPageOrderedByName(fetch)
+                : repo.findPageOrderedByName(cursor.key(), cursor.id(), fetch);
+            case EMAIL -> cursor == null
+                ? repo.findFirstPageOrderedByEmail(fetch)
+                : repo.findPageOrderedByEmail(cursor.key(), cursor.id(), fetch);
+        };
+        
+        List<UserDTO> page = users.size() > limit ? users.subList(0, limit) : users;
+        String nextCursor = users.size() > limit
+            ? UserCursor.after(sort, page.get(page.size() - 1)).encode()
+            : null;
+        
+        return new UserPage(page, nextCursor);
+    }
+    
+    /**
+     * Hands every user to {@code action} one at a time, in id order, without holding them all in memory.
+     *
+     * @param role only users with this role, or everyone if null
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachUser(@Nullable Role role, Consumer<UserDTO> action) {
+        try(Stream<UserDTO> users = role == null ? repo.streamAllOrderedById() : repo.streamByRoleOrderedById(role)) {
+            users.forEach(action);
+        }
     }
     
     @Override
-    public Optional<UserDTO> updateUser(Long id, UserInputDTO dto) {
+    public UserPage searchUsers(String query, boolean prefix, @Nullable String after, int limit) {
+        // Surrounding whitespace isn't searched for, so it can't count towards the trigram index's minimum
+        String trimmed = query.trim();
+        if(trimmed.length() < UserSearchIndex.MIN_QUERY_LENGTH) {
+            throw new InvalidSearchQueryException(
+                "Search query must be at least " + UserSearchIndex.MIN_QUERY_LENGTH + " characters, ignoring surrounding spaces");
+        }
+        
+        // Search results are in id order, so they page with the same cursors as the id-sorted listing
+        Long afterId = after != null ? UserCursor.decode(after, UserSort.ID).id() : null;
+        // One extra id tells us whether there is a next page
+        List<Long> ids = searchIndex.search(trimmed, prefix, afterId, limit + 1);
+        List<Long> pageIds = ids.size() > limit ? ids.subList(0, limit) : ids;
+        
+        List<UserDTO> page = pageIds.isEmpty() ? List.of() : repo.findDtosByIdIn(pageIds);
+        String nextCursor = ids.size() > limit
+            ? new UserCursor(UserSort.ID, pageIds.get(pageIds.size() - 1), "").encode()
+            : null;
+        
+        return new UserPage(page, nextCursor);
+    }
+    
+    // One transaction, so the user is read from the primary it's written back to
+    @Override
+    @Transactional
+    public Optional<UserDTO> updateUser(Long id, UserInputDTO dto, @Nullable Long expectedVersion) {
         checkUniqueEmail(dto, id);
         
         return repo.findById(id)
             .map(user -> {
+                if(expectedVersion != null && expectedVersion != user.getVersion()) {
+                    throw new VersionMismatchException("User " + id + " has been modified since it was read");
+                }
                 mapper.updateFromDto(dto, user, passwordEncoder);
-                return mapper.toDTO(repo.save(user));
+                // Flushed so the returned DTO carries the incremented version
+                User saved = repo.saveAndFlush(user);
+                readYourWrites.recordWrite(id);
+                if(dto.email() != null) {
+                    knownEmails.add(saved.getEmail());
+                }
+                if(dto.name() != null || dto.email() != null) {
+                    searchIndex.put(id, saved.getName(), saved.getEmail());
+                }
+                if(dto.role() != null) {
+                    principalCache.invalidate(id);
+                }
+                dtoCache.invalidate(id);
+                return mapper.toDTO(saved);
             });
     }
     
@@ -85,12 +210,74 @@ public class UserServiceImpl implements UserService {
      */
     
     @Override
+    @Transactional
     public boolean deleteUser(Long id) {
-        if(repo.existsById(id)) {
-            repo.deleteById(id);
-            return true;
+        // A single DELETE rather than existsById, then findById and remove inside deleteById
+        if(repo.deleteAllByIdIn(List.of(id)) == 0) {
+            return false;
+        }
+        readYourWrites.recordWrite(id);
+        principalCache.invalidate(id);
+        searchIndex.remove(id);
+        dtoCache.invalidate(id);
+        return true;
+    }
+    
+    @Override
+    @Transactional
+    public int deleteUsers(UserSelector selector) {
+        if(selector.role() != null) {
+            int deleted = repo.deleteAllByRole(mapper.mapRole(selector.role()));
+            // Which users were removed isn't known, so everything cached about users goes. Nor can their
+            // writes be recorded, so their own reads may see a lagging replica for up to its lag.
+            principalCache.invalidateAll();
+            dtoCache.invalidateAll();
+            searchIndex.rebuildAfterCommit();
+            return deleted;
+        }
+        
+        List<Long> ids = selector.ids().stream().distinct().toList();
+        int deleted = 0;
+        for(List<Long> batch : batches(ids)) {
+            deleted += repo.deleteAllByIdIn(batch);
+        }
+        
+        readYourWrites.recordWrites(ids);
+        ids.forEach(searchIndex::remove);
+        principalCache.invalidateAll(ids);
+        dtoCache.invalidateAll(ids);
+        return deleted;
+    }
+    
+    @Override
+    @Transactional
+    public int updateRoles(UserSelector selector, Role role) {
+        // Roles aren't part of the search text, so unlike deleteUsers the search index needs no update
+        if(selector.role() != null) {
+            int updated = repo.updateRoleByRole(mapper.mapRole(selector.role()), role);
+            principalCache.invalidateAll();
+            dtoCache.invalidateAll();
+            return updated;
+        }
+        
+        List<Long> ids = selector.ids().stream().distinct().toList();
+        int updated = 0;
+        for(List<Long> batch : batches(ids)) {
+            updated += repo.updateRoleByIdIn(batch, role);
+        }
+        
+        readYourWrites.recordWrites(ids);
+        principalCache.invalidateAll(ids);
+        dtoCache.invalidateAll(ids);
+        return updated;
+    }
+    
+    private static List<List<Long>> batches(List<Long> ids) {
+        List<List<Long>> batches = new ArrayList<>();
+        for(int from = 0; from < ids.size(); from += BULK_BATCH_SIZE) {
+            batches.add(ids.subList(from, Math.min(from + BULK_BATCH_SIZE, ids.size())));
         }
-        return false;
+        return batches;
     }
     
     private void checkUniqueEmailBulk(List<UserInputDTO> dtos) {
@@ -98,7 +285,7 @@ public class UserServiceImpl implements UserService {
         
         //check against self first
         Set<String> duplicateEmailsInDto = dtos.stream()
-            .collect(Collectors.groupingBy(UserInputDTO::email, Collectors.counting()))
+            .collect(Collectors.groupingBy(dto -> User.normalizeEmail(dto.email()), Collectors.counting()))
             .entrySet().stream()
             .filter(entry -> entry.getValue() > 1)
             .map(Map.Entry::getKey)
@@ -108,7 +295,7 @@ public class UserServiceImpl implements UserService {
         }
         
         //check against existing users
-        List<String> duplicateEmailsInDb = repo.findExistingEmails(
+        List<String> duplicateEmailsInDb = knownEmails.findTaken(
             dtos.stream()
                 .map(UserInputDTO::email)
                 .toList()
@@ -127,8 +314,8 @@ public class UserServiceImpl implements UserService {
     
     private void checkUniqueEmail(UserInputDTO dto, Long excludeId) {
         boolean emailTaken = (excludeId == null)
-            ? repo.existsByEmail(dto.email())
-            : repo.existsByEmailAndIdNot(dto.email(), excludeId);
+            ? knownEmails.isTaken(dto.email())
+            : knownEmails.isTakenByOther(dto.email(), excludeId);
         
         if(emailTaken) {
             throw new DuplicateEmailException("Email is already in use: " + dto.email());
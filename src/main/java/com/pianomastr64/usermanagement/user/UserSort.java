@@ -0,0 +1,11 @@
+package com.pianomastr64.usermanagement.user;
+
+/**
+ * Orders supported by the user listing. Each one is backed by an index that ends in the id,
+ * so keyset pagination can seek straight to the next page.
+ */
+public enum UserSort {
+    ID,
+    NAME,
+    EMAIL
+}
@@ -0,0 +1,24 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+import com.pianomastr64.usermanagement.util.Csv;
+import org.springframework.http.MediaType;
+
+public enum ImportFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON),
+    CSV(MediaType.parseMediaType(Csv.MEDIA_TYPE_VALUE));
+    
+    private final MediaType mediaType;
+    
+    ImportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+    
+    public static ImportFormat of(MediaType contentType) {
+        for(ImportFormat format : values()) {
+            if(format.mediaType.isCompatibleWith(contentType)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported import format: " + contentType);
+    }
+}
@@ -0,0 +1,78 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress of one bulk import. Written by the import thread and read by status requests, hence synchronized.
+ */
+public class ImportJob {
+    public enum Status {QUEUED, RUNNING, COMPLETED, FAILED}
+    
+    private final String id = UUID.randomUUID().toString();
+    private final int maxErrors;
+    
+    private Status status = Status.QUEUED;
+    private long imported;
+    private long failed;
+    private final List<ImportRowError> errors = new ArrayList<>();
+    @Nullable private Instant startedAt;
+    @Nullable private Instant finishedAt;
+    @Nullable private String failureReason;
+    
+    ImportJob(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+    
+    public String getId() {return id;}
+    
+    synchronized void start() {
+        status = Status.RUNNING;
+        startedAt = Instant.now();
+    }
+    
+    synchronized void rowsImported(int count) {
+        imported += count;
+    }
+    
+    synchronized void rowFailed(long line, String message) {
+        failed++;
+        if(errors.size() < maxErrors) {
+            errors.add(new ImportRowError(line, message));
+        }
+    }
+    
+    synchronized void complete() {
+        status = Status.COMPLETED;
+        finishedAt = Instant.now();
+    }
+    
+    synchronized void fail(String reason) {
+        status = Status.FAILED;
+        failureReason = reason;
+        finishedAt = Instant.now();
+    }
+    
+    synchronized boolean finishedBefore(Instant instant) {
+        return finishedAt != null && finishedAt.isBefore(instant);
+    }
+    
+    public synchronized ImportJobStatus snapshot() {
+        long processed = imported + failed;
+        double rowsPerSecond = 0;
+        if(startedAt != null) {
+            Instant end = finishedAt != null ? finishedAt : Instant.now();
+            long millis = Math.max(1, Duration.between(startedAt, end).toMillis());
+            rowsPerSecond = processed * 1000.0 / millis;
+        }
+        
+        return new ImportJobStatus(
+            id, status, processed, imported, failed, rowsPerSecond,
+            startedAt, finishedAt, failureReason, List.copyOf(errors));
+    }
+}
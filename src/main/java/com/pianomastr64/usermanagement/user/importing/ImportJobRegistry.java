@@ -0,0 +1,38 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps import jobs in memory until {@code user-import.retention} after they finish.
+ */
+@Component
+class ImportJobRegistry {
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final UserImportProperties properties;
+    
+    ImportJobRegistry(UserImportProperties properties) {
+        this.properties = properties;
+    }
+    
+    ImportJob create() {
+        ImportJob job = new ImportJob(properties.getMaxErrors());
+        jobs.put(job.getId(), job);
+        return job;
+    }
+    
+    Optional<ImportJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+    
+    @Scheduled(fixedDelayString = "${user-import.purge-interval:PT5M}")
+    void purgeFinished() {
+        Instant cutoff = Instant.now().minus(properties.getRetention());
+        jobs.values().removeIf(job -> job.finishedBefore(cutoff));
+    }
+}
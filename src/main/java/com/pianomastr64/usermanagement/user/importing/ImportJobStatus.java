@@ -0,0 +1,25 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Point-in-time view of an {@link ImportJob}, as returned by the status endpoint.
+ *
+ * @param rowsPerSecond rows processed (imported or failed) per second since the job started
+ * @param errors        per-row errors, capped at {@code user-import.max-errors}
+ */
+public record ImportJobStatus(
+    String id,
+    ImportJob.Status status,
+    long processed,
+    long imported,
+    long failed,
+    double rowsPerSecond,
+    @Nullable Instant startedAt,
+    @Nullable Instant finishedAt,
+    @Nullable String failureReason,
+    List<ImportRowError> errors
+) {}
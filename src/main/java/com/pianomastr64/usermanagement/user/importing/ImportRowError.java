@@ -0,0 +1,6 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+/**
+ * @param line line number in the uploaded file, counting from 1 (and including the CSV header)
+ */
+public record ImportRowError(long line, String message) {}
@@ -0,0 +1,122 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pianomastr64.usermanagement.user.UserInputDTO;
+import com.pianomastr64.usermanagement.util.Csv;
+import org.springframework.lang.Nullable;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads an uploaded import file one line at a time. Blank lines are skipped.
+ *
+ * <p>NDJSON files hold one {@link UserInputDTO} object per line. CSV files start with a header naming
+ * the {@code name}, {@code email}, {@code password} and {@code role} columns, in any order.</p>
+ */
+class ImportRowReader implements Closeable {
+    private static final List<String> CSV_COLUMNS = List.of("name", "email", "password", "role");
+    
+    /**
+     * A parsed row, or the reason it couldn't be parsed.
+     */
+    record Row(long line, @Nullable UserInputDTO user, @Nullable String error) {}
+    
+    private final BufferedReader reader;
+    private final ImportFormat format;
+    private final ObjectMapper objectMapper;
+    private long line;
+    // Position of name, email, password and role in each CSV record
+    private int[] columns;
+    
+    ImportRowReader(Path file, ImportFormat format, ObjectMapper objectMapper) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        this.format = format;
+        this.objectMapper = objectMapper;
+        
+        if(format == ImportFormat.CSV) {
+            readCsvHeader();
+        }
+    }
+    
+    private void readCsvHeader() throws IOException {
+        String header = nextLine();
+        if(header == null) {
+            columns = new int[0];
+            return;
+        }
+        
+        List<String> names = Csv.parseLine(header).stream()
+            .map(name -> name.trim().toLowerCase(Locale.ROOT))
+            .toList();
+        columns = new int[CSV_COLUMNS.size()];
+        for(int i = 0; i < columns.length; i++) {
+            columns[i] = names.indexOf(CSV_COLUMNS.get(i));
+            if(columns[i] < 0) {
+                throw new IOException("CSV header is missing the '" + CSV_COLUMNS.get(i) + "' column");
+            }
+        }
+    }
+    
+    /**
+     * @return the next row, or null at the end of the file
+     */
+    @Nullable
+    Row next() throws IOException {
+        String text = nextLine();
+        if(text == null) {
+            return null;
+        }
+        
+        try {
+            return new Row(line, parse(text), null);
+        } catch(JsonProcessingException e) {
+            return new Row(line, null, "Malformed JSON: " + e.getOriginalMessage());
+        } catch(IllegalArgumentException e) {
+            return new Row(line, null, "Malformed CSV: " + e.getMessage());
+        }
+    }
+    
+    @Nullable
+    private String nextLine() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if(text == null) {
+                return null;
+            }
+            line++;
+        } while(text.isBlank());
+        return text;
+    }
+    
+    private UserInputDTO parse(String text) throws JsonProcessingException {
+        if(format == ImportFormat.NDJSON) {
+            return objectMapper.readValue(text, UserInputDTO.class);
+        }
+        
+        List<String> fields = Csv.parseLine(text);
+        return new UserInputDTO(
+            field(fields, columns[0]),
+            field(fields, columns[1]),
+            field(fields, columns[2]),
+            field(fields, columns[3]));
+    }
+    
+    @Nullable
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() && !fields.get(index).isEmpty() ? fields.get(index) : null;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
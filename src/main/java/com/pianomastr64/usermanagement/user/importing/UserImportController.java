@@ -0,0 +1,44 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+import com.pianomastr64.usermanagement.util.Csv;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+
+@RestController
+@RequestMapping("/users/import")
+public class UserImportController {
+    
+    private final UserImportService service;
+    
+    public UserImportController(UserImportService service) {
+        this.service = service;
+    }
+    
+    /**
+     * Starts importing users from an NDJSON or CSV body. Poll the returned {@code Location} for progress.
+     */
+    @PostMapping(consumes = {MediaType.APPLICATION_NDJSON_VALUE, Csv.MEDIA_TYPE_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportJobStatus> startImport(HttpServletRequest request) throws IOException {
+        ImportFormat format = ImportFormat.of(MediaType.parseMediaType(request.getContentType()));
+        ImportJobStatus job = service.submit(request.getInputStream(), format);
+        
+        return ResponseEntity.accepted()
+            .location(URI.create("/users/import/" + job.id()))
+            .body(job);
+    }
+    
+    @GetMapping("/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportJobStatus> getImportStatus(@PathVariable String jobId) {
+        return service.getStatus(jobId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,46 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "user-import")
+public class UserImportProperties {
+    /**
+     * Rows validated, hashed and inserted together. Each chunk is committed in its own transaction.
+     */
+    private int chunkSize = 500;
+    
+    /**
+     * Imports that run at the same time. Further uploads wait in the QUEUED state.
+     */
+    private int concurrency = 1;
+    
+    /**
+     * Per-row errors kept for the status endpoint. Later failures are still counted.
+     */
+    private int maxErrors = 1_000;
+    
+    /**
+     * How long a finished job's status stays available.
+     */
+    private Duration retention = Duration.ofHours(1);
+    
+    public int getChunkSize() {return chunkSize;}
+    
+    public void setChunkSize(int chunkSize) {this.chunkSize = chunkSize;}
+    
+    public int getConcurrency() {return concurrency;}
+    
+    public void setConcurrency(int concurrency) {this.concurrency = concurrency;}
+    
+    public int getMaxErrors() {return maxErrors;}
+    
+    public void setMaxErrors(int maxErrors) {this.maxErrors = maxErrors;}
+    
+    public Duration getRetention() {return retention;}
+    
+    public void setRetention(Duration retention) {this.retention = retention;}
+}
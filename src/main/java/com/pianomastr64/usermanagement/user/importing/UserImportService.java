@@ -0,0 +1,240 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pianomastr64.usermanagement.exception.PasswordHashingRejectedException;
+import com.pianomastr64.usermanagement.user.KnownEmails;
+import com.pianomastr64.usermanagement.user.User;
+import com.pianomastr64.usermanagement.user.UserInputDTO;
+import com.pianomastr64.usermanagement.user.UserService;
+import com.pianomastr64.usermanagement.user.validation.OnCreate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Imports users from NDJSON or CSV uploads of any size.
+ *
+ * <p>The upload is spooled to a temporary file and a job id is returned straight away. The file is then read
+ * one row at a time on the import pool; rows are validated, hashed and inserted {@code user-import.chunk-size}
+ * at a time, one transaction per chunk. A bad row is recorded against its line number and skipped, so it
+ * never rolls back its neighbours. If a chunk still fails to save, e.g. because a user with one of its emails
+ * was created meanwhile, its rows are retried one at a time so only the bad ones are reported. Saves turned
+ * away by a full password-hashing queue are retried after a short pause.</p>
+ *
+ * <p>Rows are counted in {@code user.import.rows}, tagged by result.</p>
+ */
+@Service
+public class UserImportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserImportService.class);
+    private static final int MAX_HASHING_ATTEMPTS = 3;
+    private static final long HASHING_RETRY_DELAY_MILLIS = 200;
+    
+    private final ImportJobRegistry jobs;
+    private final UserImportProperties properties;
+    private final UserService userService;
+    private final KnownEmails knownEmails;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    
+    private final Counter importedRows;
+    private final Counter failedRows;
+    
+    public UserImportService(
+        ImportJobRegistry jobs,
+        UserImportProperties properties,
+        UserService userService,
+        KnownEmails knownEmails,
+        Validator validator,
+        ObjectMapper objectMapper,
+        MeterRegistry registry
+    ) {
+        this.jobs = jobs;
+        this.properties = properties;
+        this.userService = userService;
+        this.knownEmails = knownEmails;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getConcurrency(), runnable -> {
+            Thread thread = new Thread(runnable, "user-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        this.importedRows = rows(registry, "imported");
+        this.failedRows = rows(registry, "failed");
+    }
+    
+    private static Counter rows(MeterRegistry registry, String result) {
+        return Counter.builder("user.import.rows")
+            .tag("result", result)
+            .register(registry);
+    }
+    
+    /**
+     * Copies {@code body} to disk and queues it for import.
+     */
+    public ImportJobStatus submit(InputStream body, ImportFormat format) throws IOException {
+        Path file = Files.createTempFile("user-import-", "." + format.name().toLowerCase(Locale.ROOT));
+        try {
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch(IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        
+        ImportJob job = jobs.create();
+        executor.execute(() -> run(job, file, format));
+        return job.snapshot();
+    }
+    
+    public Optional<ImportJobStatus> getStatus(String jobId) {
+        return jobs.find(jobId).map(ImportJob::snapshot);
+    }
+    
+    private void run(ImportJob job, Path file, ImportFormat format) {
+        job.start();
+        try(ImportRowReader reader = new ImportRowReader(file, format, objectMapper)) {
+            List<ImportRowReader.Row> chunk = new ArrayList<>(properties.getChunkSize());
+            ImportRowReader.Row row;
+            while((row = reader.next()) != null) {
+                chunk.add(row);
+                if(chunk.size() == properties.getChunkSize()) {
+                    importChunk(job, chunk);
+                    chunk.clear();
+                }
+            }
+            if(!chunk.isEmpty()) {
+                importChunk(job, chunk);
+            }
+            job.complete();
+        } catch(IOException | RuntimeException e) {
+            LOGGER.warn("User import {} failed", job.getId(), e);
+            job.fail(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch(IOException e) {
+                LOGGER.warn("Could not delete import file {}", file, e);
+            }
+        }
+    }
+    
+    private void importChunk(ImportJob job, List<ImportRowReader.Row> rows) {
+        // Rows that passed validation, by normalized email, so duplicates within the chunk are caught too
+        Map<String, ImportRowReader.Row> valid = new LinkedHashMap<>();
+        for(ImportRowReader.Row row : rows) {
+            String error = row.error() != null ? row.error() : validate(row.user());
+            if(error == null && valid.containsKey(User.normalizeEmail(row.user().email()))) {
+                error = "Duplicate email in import: " + row.user().email();
+            }
+            
+            if(error != null) {
+                rowFailed(job, row, error);
+            } else {
+                valid.put(User.normalizeEmail(row.user().email()), row);
+            }
+        }
+        if(valid.isEmpty()) {
+            return;
+        }
+        
+        for(String email : knownEmails.findTaken(List.copyOf(valid.keySet()))) {
+            ImportRowReader.Row row = valid.remove(email);
+            rowFailed(job, row, "Email is already in use: " + row.user().email());
+        }
+        if(valid.isEmpty()) {
+            return;
+        }
+        
+        List<UserInputDTO> users = valid.values().stream()
+            .map(ImportRowReader.Row::user)
+            .toList();
+        try {
+            withHashingRetries(() -> userService.createUsers(users));
+            rowsImported(job, users.size());
+        } catch(RuntimeException e) {
+            // Most likely a user created concurrently with the same email. The whole chunk was rolled back,
+            // so find the bad rows by saving the rest one at a time.
+            LOGGER.debug("Import {} chunk failed, retrying its rows one at a time", job.getId(), e);
+            for(ImportRowReader.Row row : valid.values()) {
+                importRow(job, row);
+            }
+        }
+    }
+    
+    private void importRow(ImportJob job, ImportRowReader.Row row) {
+        try {
+            withHashingRetries(() -> userService.createUser(row.user()));
+            rowsImported(job, 1);
+        } catch(RuntimeException e) {
+            rowFailed(job, row, "Row could not be saved: " + e.getMessage());
+        }
+    }
+    
+    private <T> T withHashingRetries(Supplier<T> save) {
+        for(int attempt = 1; ; attempt++) {
+            try {
+                return save.get();
+            } catch(PasswordHashingRejectedException e) {
+                if(attempt == MAX_HASHING_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(HASHING_RETRY_DELAY_MILLIS * attempt);
+                } catch(InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    private void rowsImported(ImportJob job, int count) {
+        job.rowsImported(count);
+        importedRows.increment(count);
+    }
+    
+    @Nullable
+    private String validate(UserInputDTO user) {
+        Set<ConstraintViolation<UserInputDTO>> violations = validator.validate(user, OnCreate.class);
+        if(violations.isEmpty()) {
+            return null;
+        }
+        
+        return violations.stream()
+            .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+            .sorted()
+            .collect(Collectors.joining("; "));
+    }
+    
+    private void rowFailed(ImportJob job, ImportRowReader.Row row, String message) {
+        job.rowFailed(row.line(), message);
+        failedRows.increment();
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
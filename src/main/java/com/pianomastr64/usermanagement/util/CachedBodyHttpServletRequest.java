@@ -0,0 +1,83 @@
+package com.pianomastr64.usermanagement.util;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the request body up front so it can be inspected by a filter and still be read again by the controller.
+ */
+public class CachedBodyHttpServletRequest extends HttpServletRequestWrapper {
+    private final byte[] body;
+    
+    /**
+     * Reads at most {@code maxBytes + 1} bytes, whatever the request's Content-Length says, so a body that
+     * is too large can be detected with {@link #exceeds} without buffering all of it.
+     */
+    public CachedBodyHttpServletRequest(HttpServletRequest request, int maxBytes) throws IOException {
+        super(request);
+        this.body = request.getInputStream().readNBytes(maxBytes + 1);
+    }
+    
+    public boolean exceeds(int maxBytes) {
+        return body.length > maxBytes;
+    }
+    
+    public byte[] getBody() {
+        return body;
+    }
+    
+    @Override
+    public ServletInputStream getInputStream() {
+        ByteArrayInputStream input = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return input.available() == 0;
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                // The whole body is already buffered, so it can be handed over right away
+                try {
+                    if(!isFinished()) {
+                        readListener.onDataAvailable();
+                    }
+                    if(isFinished()) {
+                        readListener.onAllDataRead();
+                    }
+                } catch(IOException e) {
+                    readListener.onError(e);
+                }
+            }
+            
+            @Override
+            public int read() {
+                return input.read();
+            }
+            
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return input.read(b, off, len);
+            }
+        };
+    }
+    
+    @Override
+    public BufferedReader getReader() {
+        Charset charset = getCharacterEncoding() != null
+            ? Charset.forName(getCharacterEncoding())
+            : StandardCharsets.UTF_8;
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+}
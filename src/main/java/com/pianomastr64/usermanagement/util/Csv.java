@@ -0,0 +1,84 @@
+package com.pianomastr64.usermanagement.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 support for the user import and export endpoints.
+ *
+ * <p>Fields may be quoted, with {@code ""} standing for a literal quote. Quoted fields spanning several lines
+ * are not supported, which is fine for user records.</p>
+ */
+public final class Csv {
+    public static final String MEDIA_TYPE_VALUE = "text/csv";
+    
+    private Csv() {}
+    
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        
+        for(int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if(quoted) {
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if(c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if(c == '"') {
+                quoted = true;
+            } else if(c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if(quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        
+        return fields;
+    }
+    
+    /**
+     * Stops a spreadsheet from running a user-supplied value as a formula when an exported file is opened:
+     * values starting with {@code =}, {@code +}, {@code -}, {@code @}, a tab or a carriage return get a leading
+     * {@code '}, which spreadsheets hide and treat as "text follows". Use on exported free-text fields only;
+     * the value no longer round-trips through {@link #parseLine}.
+     */
+    public static String escapeFormula(String value) {
+        if(value.isEmpty()) {
+            return value;
+        }
+        return switch(value.charAt(0)) {
+            case '=', '+', '-', '@', '\t', '\r' -> "'" + value;
+            default -> value;
+        };
+    }
+    
+    /**
+     * Joins {@code fields} into one record, without the line terminator. Nulls become empty fields.
+     */
+    public static String formatLine(String... fields) {
+        StringBuilder line = new StringBuilder();
+        for(int i = 0; i < fields.length; i++) {
+            if(i > 0) {
+                line.append(',');
+            }
+            String field = fields[i] != null ? fields[i] : "";
+            if(field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                line.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(field);
+            }
+        }
+        return line.toString();
+    }
+}
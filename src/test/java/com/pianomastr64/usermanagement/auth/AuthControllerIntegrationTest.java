@@ -0,0 +1,153 @@
+package com.pianomastr64.usermanagement.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pianomastr64.usermanagement.user.Role;
+import com.pianomastr64.usermanagement.user.User;
+import com.pianomastr64.usermanagement.user.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AuthControllerIntegrationTest {
+    
+    @Autowired MockMvc mockMvc;
+    @Autowired UserRepository repo;
+    @Autowired PasswordEncoder encoder;
+    @Autowired ObjectMapper mapper;
+    @Autowired RefreshTokenRepository refreshTokens;
+    @Autowired SessionService sessionService;
+    
+    private String accessToken;
+    private String refreshToken;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        repo.deleteAll();
+        repo.save(new User("TestUser", "user@test.com", encoder.encode("uPwd"), Role.USER));
+        
+        JsonNode tokens = readJson(postJson("/auth/login", Map.of("email", "user@test.com", "password", "uPwd"))
+            .andExpect(status().isOk()));
+        accessToken = tokens.get("token").asText();
+        refreshToken = tokens.get("refreshToken").asText();
+    }
+    
+    private ResultActions postJson(String path, Map<String, String> body) throws Exception {
+        return mockMvc.perform(post(path)
+            .contentType(APPLICATION_JSON)
+            .content(mapper.writeValueAsString(body)));
+    }
+    
+    private JsonNode readJson(ResultActions result) throws Exception {
+        return mapper.readTree(result.andReturn().getResponse().getContentAsString());
+    }
+    
+    @Test
+    void refreshRotatesRefreshToken() throws Exception {
+        JsonNode refreshed = readJson(postJson("/auth/refresh", Map.of("refreshToken", refreshToken))
+            .andExpect(status().isOk()));
+        assertNotEquals(refreshToken, refreshed.get("refreshToken").asText());
+        
+        // Each refresh token only works once
+        postJson("/auth/refresh", Map.of("refreshToken", refreshToken))
+            .andExpect(status().isUnauthorized());
+    }
+    
+    @Test
+    void concurrentRefreshesWithOneTokenSucceedOnce() throws Exception {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try(ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for(int i = 0; i < threads; i++) {
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    return postJson("/auth/refresh", Map.of("refreshToken", refreshToken))
+                        .andReturn().getResponse().getStatus();
+                }));
+            }
+            start.countDown();
+            
+            int succeeded = 0;
+            for(Future<Integer> status : statuses) {
+                if(status.get() == 200) {
+                    succeeded++;
+                }
+            }
+            assertEquals(1, succeeded);
+        }
+    }
+    
+    @Test
+    void purgeDeletesExpiredSessionsOnly() {
+        Long userId = repo.findByEmail("user@test.com").orElseThrow().getId();
+        RefreshToken expired = new RefreshToken(userId, "0".repeat(64), Instant.now().minusSeconds(60));
+        expired.revoke();
+        refreshTokens.save(expired);
+        long before = refreshTokens.count();
+        
+        sessionService.purgeExpired();
+        
+        assertFalse(refreshTokens.existsById(expired.getId()));
+        // The session opened by setUp is still active
+        assertEquals(before - 1, refreshTokens.count());
+    }
+    
+    @Test
+    void logoutRevokesAccessToken() throws Exception {
+        mockMvc.perform(get("/users/me")
+                .header("Authorization", "Bearer " + accessToken))
+            .andExpect(status().isOk());
+        
+        postJson("/auth/logout", Map.of("refreshToken", refreshToken))
+            .andExpect(status().isNoContent());
+        
+        mockMvc.perform(get("/users/me")
+                .header("Authorization", "Bearer " + accessToken))
+            .andExpect(status().isUnauthorized());
+    }
+    
+    @Test
+    void registeringTakenEmailConflicts() throws Exception {
+        postJson("/auth/register", Map.of("name", "Other", "email", "user@test.com", "password", "pass1234"))
+            .andExpect(status().isConflict());
+        
+        postJson("/auth/register", Map.of("name", "New", "email", "new@test.com", "password", "pass1234"))
+            .andExpect(status().isCreated());
+        postJson("/auth/register", Map.of("name", "Again", "email", "new@test.com", "password", "pass1234"))
+            .andExpect(status().isConflict());
+    }
+    
+    @Test
+    void emailsAreMatchedIgnoringCase() throws Exception {
+        postJson("/auth/login", Map.of("email", "User@Test.COM", "password", "uPwd"))
+            .andExpect(status().isOk());
+        
+        postJson("/auth/register", Map.of("name", "Other", "email", "USER@test.com", "password", "pass1234"))
+            .andExpect(status().isConflict());
+    }
+}
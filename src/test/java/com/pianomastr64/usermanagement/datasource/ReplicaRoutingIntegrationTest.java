@@ -0,0 +1,113 @@
+package com.pianomastr64.usermanagement.datasource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pianomastr64.usermanagement.user.Role;
+import com.pianomastr64.usermanagement.user.User;
+import com.pianomastr64.usermanagement.user.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The "replica" is a second pool on the same in-memory database, so it never lags
+@SpringBootTest(properties = {
+    "replica-routing.enabled=true",
+    "replica-routing.replica-lag=1m",
+    "replica-routing.replicas[0].url=jdbc:h2:mem:testdb",
+    "replica-routing.replicas[0].username=sa",
+    "spring.jpa.open-in-view=false"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReplicaRoutingIntegrationTest {
+    
+    @Autowired MockMvc mockMvc;
+    @Autowired UserRepository repo;
+    @Autowired PasswordEncoder encoder;
+    @Autowired ObjectMapper mapper;
+    @Autowired MeterRegistry registry;
+    
+    private Long adminId;
+    private String adminToken;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        repo.deleteAll();
+        adminId = repo.save(new User("TestAdmin", "admin@test.com", encoder.encode("aPwd"), Role.ADMIN)).getId();
+        
+        String response = mockMvc.perform(post("/auth/login")
+                .contentType(APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Map.of("email", "admin@test.com", "password", "aPwd"))))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        adminToken = mapper.readTree(response).get("token").asText();
+    }
+    
+    private RequestPostProcessor bearer(String token) {
+        return req -> {
+            req.addHeader("Authorization", "Bearer " + token);
+            return req;
+        };
+    }
+    
+    private double routed(String target, String reason) {
+        return registry.get("datasource.routed").tag("target", target).tag("reason", reason).counter().count();
+    }
+    
+    @Test
+    void readsGoToReplicaUntilTheUserWrites() throws Exception {
+        double replicaReadsBefore = routed("replica", "read");
+        mockMvc.perform(get("/users/" + adminId)
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk());
+        double replicaReads = routed("replica", "read");
+        assertTrue(replicaReads > replicaReadsBefore);
+        
+        mockMvc.perform(patch("/users/" + adminId)
+                .with(bearer(adminToken))
+                .contentType(APPLICATION_JSON)
+                .content("{\"name\":\"Renamed\"}"))
+            .andExpect(status().isOk());
+        
+        // Within replica-lag of its own write, the admin reads from the primary
+        double readsAfterWrite = routed("primary", "read_after_write");
+        mockMvc.perform(get("/users/" + adminId)
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk());
+        assertEquals(readsAfterWrite + 1, routed("primary", "read_after_write"));
+        assertEquals(replicaReads, routed("replica", "read"));
+    }
+    
+    @Test
+    void registeredUserReadsOwnRowFromPrimary() throws Exception {
+        String response = mockMvc.perform(post("/auth/register")
+                .contentType(APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Map.of("name", "New", "email", "new@test.com", "password", "pass1234"))))
+            .andExpect(status().isCreated())
+            .andReturn().getResponse().getContentAsString();
+        String token = mapper.readTree(response).get("token").asText();
+        
+        // Registration isn't authenticated, so the write is recorded under the new user's id
+        double readsAfterWrite = routed("primary", "read_after_write");
+        double replicaReads = routed("replica", "read");
+        mockMvc.perform(get("/users/me")
+                .with(bearer(token)))
+            .andExpect(status().isOk());
+        assertTrue(routed("primary", "read_after_write") > readsAfterWrite);
+        assertEquals(replicaReads, routed("replica", "read"));
+    }
+}
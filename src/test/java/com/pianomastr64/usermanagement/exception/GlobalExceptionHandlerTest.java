@@ -0,0 +1,43 @@
+package com.pianomastr64.usermanagement.exception;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GlobalExceptionHandlerTest {
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+    
+    private HttpStatus statusFor(String constraintName) throws Exception {
+        ConstraintViolationException violation =
+            new ConstraintViolationException("could not execute statement", new SQLException(), constraintName);
+        ResponseEntity<Object> response = handler.handleDataIntegrityViolation(
+            new DataIntegrityViolationException("could not execute statement", violation),
+            new ServletWebRequest(new MockHttpServletRequest()));
+        return HttpStatus.valueOf(response.getStatusCode().value());
+    }
+    
+    @Test
+    void takenEmailConflicts() throws Exception {
+        assertEquals(HttpStatus.CONFLICT, statusFor("PUBLIC.UC_USERS_EMAIL_NORMALIZED_INDEX_4 ON PUBLIC.USERS(EMAIL_NORMALIZED)"));
+        assertEquals(HttpStatus.CONFLICT, statusFor("uc_users_email"));
+    }
+    
+    @Test
+    void otherViolationsAreNotConflicts() throws Exception {
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, statusFor("fk_refresh_tokens_user"));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, statusFor(null));
+        
+        ResponseEntity<Object> notNull = handler.handleDataIntegrityViolation(
+            new DataIntegrityViolationException("NULL not allowed for column \"NAME\""),
+            new ServletWebRequest(new MockHttpServletRequest()));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), notNull.getStatusCode().value());
+    }
+}
@@ -0,0 +1,83 @@
+package com.pianomastr64.usermanagement.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+    private final AtomicInteger encoded = new AtomicInteger();
+    
+    // Takes a random few milliseconds per hash, so hashes finish out of order
+    private final PasswordEncoder delegate = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if("bad".contentEquals(rawPassword)) {
+                throw new IllegalArgumentException("Cannot hash " + rawPassword);
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(1, 5));
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            encoded.incrementAndGet();
+            return "hash:" + rawPassword;
+        }
+        
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals("hash:" + rawPassword);
+        }
+    };
+    
+    private final BoundedPasswordEncoder encoder = newEncoder();
+    
+    private BoundedPasswordEncoder newEncoder() {
+        PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setPoolSize(4);
+        properties.setQueueCapacity(10);
+        return new BoundedPasswordEncoder(delegate, properties, new SimpleMeterRegistry());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        encoder.shutdown();
+    }
+    
+    @Test
+    void encodeAll_keepsInputOrder() {
+        List<String> passwords = IntStream.range(0, 50)
+            .mapToObj(i -> "password" + i)
+            .toList();
+        
+        List<String> expected = passwords.stream()
+            .map(password -> "hash:" + password)
+            .toList();
+        assertEquals(expected, encoder.encodeAll(passwords));
+    }
+    
+    @Test
+    void encodeAll_keepsNullPasswordsInPlace() {
+        assertEquals(Arrays.asList("hash:a", null, "hash:b"), encoder.encodeAll(Arrays.asList("a", null, "b")));
+    }
+    
+    @Test
+    void encodeAll_failsAsAWholeWhenOneHashFails() {
+        List<String> passwords = new ArrayList<>();
+        IntStream.range(0, 40).forEach(i -> passwords.add("password" + i));
+        passwords.set(5, "bad");
+        
+        assertThrows(IllegalArgumentException.class, () -> encoder.encodeAll(passwords));
+        // Hashes behind the failed one are cancelled rather than all run to completion
+        assertTrue(encoded.get() < passwords.size() - 1, "encoded " + encoded.get());
+    }
+}
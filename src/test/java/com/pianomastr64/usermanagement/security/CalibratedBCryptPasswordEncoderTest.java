@@ -0,0 +1,32 @@
+package com.pianomastr64.usermanagement.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalibratedBCryptPasswordEncoderTest {
+    
+    private final CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+    
+    @Test
+    void upgradeEncoding_isTrueForWeakerAndStrongerHashes() {
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password")));
+    }
+    
+    @Test
+    void upgradeEncoding_isFalseForCurrentStrength() {
+        assertFalse(encoder.upgradeEncoding(encoder.encode("password")));
+    }
+    
+    @Test
+    void create_usesConfiguredStrength() {
+        PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setStrength(4);
+        
+        String hash = CalibratedBCryptPasswordEncoder.create(properties).encode("password");
+        
+        assertTrue(hash.matches("^\\$2[abxy]?\\$04\\$.*"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.pianomastr64.usermanagement.security;
+
+import com.pianomastr64.usermanagement.auth.RevokedSessions;
+import com.pianomastr64.usermanagement.user.Role;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class JwtAuthFilterTest {
+    private static final String SECRET = "very_long_secret_key_for_testing_purposes";
+    
+    private final PrincipalCache principalCache = mock(PrincipalCache.class);
+    private final RevokedSessions revokedSessions = mock(RevokedSessions.class);
+    
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+    
+    private static JwtUtil jwtUtil(boolean claimsMode, int claimsVersion) {
+        VerifiedTokenCache tokenCache =
+            new VerifiedTokenCache(new VerifiedTokenCacheProperties(), new SimpleMeterRegistry());
+        return new JwtUtil(SECRET, claimsMode, claimsVersion, Duration.ofMinutes(15), tokenCache, new MockEnvironment());
+    }
+    
+    private List<String> authenticate(JwtUtil jwtUtil, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/me");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new JwtAuthFilter(jwtUtil, principalCache, revokedSessions).doFilter(request, response, new MockFilterChain());
+        
+        assertEquals(200, response.getStatus());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication.getAuthorities().stream()
+            .map(GrantedAuthority::getAuthority)
+            .toList();
+    }
+    
+    @Test
+    void claimsModeTokenSkipsPrincipalLookup() throws Exception {
+        JwtUtil jwtUtil = jwtUtil(true, 1);
+        String token = jwtUtil.generateToken(42L, Role.ADMIN, null);
+        
+        assertEquals(List.of("ROLE_ADMIN"), authenticate(jwtUtil, token));
+        verifyNoInteractions(principalCache);
+    }
+    
+    @Test
+    void tokenWithOlderClaimsVersionFallsBackToDatabaseRole() throws Exception {
+        String token = jwtUtil(true, 1).generateToken(42L, Role.ADMIN, null);
+        // The user was demoted, and the version bumped so outstanding tokens are re-checked
+        when(principalCache.getRole(42L)).thenReturn(Optional.of(Role.USER));
+        
+        assertEquals(List.of("ROLE_USER"), authenticate(jwtUtil(true, 2), token));
+        verify(principalCache).getRole(42L);
+    }
+    
+    @Test
+    void claimsAreIgnoredWhenClaimsModeIsOff() throws Exception {
+        String token = jwtUtil(true, 1).generateToken(42L, Role.ADMIN, null);
+        when(principalCache.getRole(42L)).thenReturn(Optional.of(Role.USER));
+        
+        assertEquals(List.of("ROLE_USER"), authenticate(jwtUtil(false, 1), token));
+    }
+}
@@ -1,6 +1,12 @@
 package com.pianomastr64.usermanagement.security;
 
+import com.pianomastr64.usermanagement.user.Role;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -8,20 +14,50 @@ class JwtUtilTest {
     
     private JwtUtil jwtUtil;
     
-//    @BeforeEach
-//    void setUp() {
-//        jwtUtil = new JwtUtil("very_long_secret_key_for_development");
-//    }
-    
-//    @Test
-//    void generateToken_shouldContainEmail() {
-//        String token = jwtUtil.generateToken("test@example.com");
-//        String email = jwtUtil.extractEmail(token);
-//        assertEquals("test@example.com", email);
-//    }
-    
-//    @Test
-//    void validateToken_returnsFalseIfNull() {
-//        assertFalse(jwtUtil.validateToken(null));
-//    }
-}
\ No newline at end of file
+    @BeforeEach
+    void setUp() {
+        VerifiedTokenCache tokenCache =
+            new VerifiedTokenCache(new VerifiedTokenCacheProperties(), new SimpleMeterRegistry());
+        jwtUtil = new JwtUtil(
+            "very_long_secret_key_for_testing_purposes", false, 1, Duration.ofMinutes(15), tokenCache, new MockEnvironment());
+    }
+    
+    @Test
+    void generateToken_shouldContainId() {
+        String token = jwtUtil.generateToken(42L, Role.USER, null);
+        assertEquals(42L, jwtUtil.extractId(token));
+    }
+    
+    @Test
+    void validateToken_returnsFalseIfNull() {
+        assertFalse(jwtUtil.validateToken(null));
+    }
+    
+    @Test
+    void validateToken_returnsFalseIfBlank() {
+        assertFalse(jwtUtil.validateToken(" "));
+    }
+    
+    @Test
+    void validateToken_returnsFalseIfMalformed() {
+        assertFalse(jwtUtil.validateToken("not.a.token"));
+    }
+    
+    @Test
+    void parseToken_rejectsTamperedPayloadEvenWhenSignatureIsCached() {
+        String token = jwtUtil.generateToken(42L, Role.USER, null);
+        assertTrue(jwtUtil.parseToken(token).isPresent());
+        
+        String[] parts = token.split("\\.");
+        String otherPayload = jwtUtil.generateToken(7L, Role.USER, null).split("\\.")[1];
+        String forged = parts[0] + "." + otherPayload + "." + parts[2];
+        
+        assertTrue(jwtUtil.parseToken(forged).isEmpty());
+    }
+    
+    @Test
+    void parseToken_readsSessionId() {
+        String token = jwtUtil.generateToken(42L, Role.USER, 9L);
+        assertEquals(9L, jwtUtil.parseToken(token).orElseThrow().sessionId());
+    }
+}
@@ -0,0 +1,68 @@
+package com.pianomastr64.usermanagement.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Compares hashing the passwords of a {@code POST /users/bulk} body of 100 users one after another with
+ * {@link BoundedPasswordEncoder#encodeAll} at the default and at the full bulk parallelism.
+ *
+ * <p>Not a test. Run it with</p>
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.pianomastr64.usermanagement.security.PasswordHashingBenchmark
+ * </pre>
+ */
+public class PasswordHashingBenchmark {
+    private static final int PASSWORDS = 100;
+    private static final int STRENGTH = 10;
+    private static final int WARMUP_ROUNDS = 1;
+    private static final int ROUNDS = 3;
+    
+    public static void main(String[] args) {
+        PasswordEncoder delegate = new BCryptPasswordEncoder(STRENGTH);
+        List<String> passwords = IntStream.range(0, PASSWORDS)
+            .mapToObj(i -> "password" + i)
+            .toList();
+        int processors = Runtime.getRuntime().availableProcessors();
+        
+        System.out.printf("%d passwords, BCrypt strength %d, %d processors%n", PASSWORDS, STRENGTH, processors);
+        System.out.printf("%-28s %10s %14s%n", "", "ms", "hashes/s");
+        report("sequential loop", measure(() -> passwords.stream().map(delegate::encode).toList()));
+        
+        for(Integer bulkParallelism : new Integer[] {null, processors}) {
+            PasswordHashingProperties properties = new PasswordHashingProperties();
+            properties.setPoolSize(processors);
+            properties.setQueueCapacity(PASSWORDS);
+            properties.setBulkParallelism(bulkParallelism);
+            BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(delegate, properties, new SimpleMeterRegistry());
+            try {
+                String name = "encodeAll, " + (bulkParallelism == null ? "default" : bulkParallelism + " in flight");
+                report(name, measure(() -> encoder.encodeAll(passwords)));
+            } finally {
+                encoder.shutdown();
+            }
+        }
+    }
+    
+    private static long measure(Supplier<List<String>> hashAll) {
+        for(int i = 0; i < WARMUP_ROUNDS; i++) {
+            hashAll.get();
+        }
+        
+        long start = System.nanoTime();
+        for(int i = 0; i < ROUNDS; i++) {
+            hashAll.get();
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+    
+    private static void report(String name, long nanos) {
+        System.out.printf("%-28s %10.0f %14.1f%n", name, nanos / 1e6, PASSWORDS / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,84 @@
+package com.pianomastr64.usermanagement.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.convention.TestBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PasswordHashingOverloadIntegrationTest {
+    private static final CountDownLatch hashing = new CountDownLatch(1);
+    private static final CountDownLatch release = new CountDownLatch(1);
+    
+    // One hashing thread and no queue. Hashing "block" holds the thread until the test releases it.
+    @TestBean(name = "passwordEncoder")
+    BoundedPasswordEncoder passwordEncoder;
+    
+    static BoundedPasswordEncoder passwordEncoder() {
+        PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setPoolSize(1);
+        properties.setQueueCapacity(0);
+        
+        PasswordEncoder delegate = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                if("block".contentEquals(rawPassword)) {
+                    hashing.countDown();
+                    try {
+                        release.await();
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return "hash:" + rawPassword;
+            }
+            
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals("hash:" + rawPassword);
+            }
+        };
+        return new BoundedPasswordEncoder(delegate, properties, new SimpleMeterRegistry());
+    }
+    
+    @Autowired MockMvc mockMvc;
+    
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+    }
+    
+    @Test
+    void registrationIsTurnedAwayWithRetryAfterWhileEveryHashingThreadIsBusy() throws Exception {
+        Thread busy = new Thread(() -> passwordEncoder.encode("block"));
+        busy.start();
+        assertTrue(hashing.await(5, TimeUnit.SECONDS));
+        
+        mockMvc.perform(post("/auth/register")
+                .contentType(APPLICATION_JSON)
+                .content("{\"name\":\"New\",\"email\":\"overload@test.com\",\"password\":\"pass1234\"}"))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        
+        release.countDown();
+        busy.join();
+    }
+}
@@ -0,0 +1,46 @@
+package com.pianomastr64.usermanagement.security;
+
+import com.pianomastr64.usermanagement.datasource.ReadYourWrites;
+import com.pianomastr64.usermanagement.datasource.ReplicaRoutingProperties;
+import com.pianomastr64.usermanagement.user.Role;
+import com.pianomastr64.usermanagement.user.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PrincipalCacheTest {
+    
+    private final UserRepository repo = mock(UserRepository.class);
+    private final PrincipalCache cache = new PrincipalCache(repo, new ReadYourWrites(new ReplicaRoutingProperties()), new PrincipalCacheProperties(), new SimpleMeterRegistry());
+    
+    @AfterEach
+    void clearSynchronization() {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    void roleReadBeforeCommitIsDroppedWhenTransactionCompletes() {
+        when(repo.findRoleById(1L)).thenReturn(Optional.of(Role.ADMIN));
+        TransactionSynchronizationManager.initSynchronization();
+        
+        cache.invalidate(1L);
+        // Another request reads the row before the demotion is committed
+        assertEquals(Optional.of(Role.ADMIN), cache.getRole(1L));
+        
+        when(repo.findRoleById(1L)).thenReturn(Optional.of(Role.USER));
+        TransactionSynchronizationManager.getSynchronizations()
+            .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        
+        assertEquals(Optional.of(Role.USER), cache.getRole(1L));
+    }
+}
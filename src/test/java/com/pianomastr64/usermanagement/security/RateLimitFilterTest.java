@@ -0,0 +1,66 @@
+package com.pianomastr64.usermanagement.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class RateLimitFilterTest {
+    private final RateLimitFilter filter = newFilter();
+    
+    private static RateLimitFilter newFilter() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getLogin().setCapacity(1);
+        properties.getLogin().setRefillPerSecond(0.01);
+        RateLimiter rateLimiter = new RateLimiter(properties, new SimpleMeterRegistry());
+        return new RateLimitFilter(rateLimiter, mock(JwtUtil.class), new ObjectMapper());
+    }
+    
+    private static MockHttpServletRequest login(String body) {
+        // No servlet path, as under MockMvc
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+    
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+    
+    @Test
+    void repeatedLoginsForOneEmailAreRejectedWithRetryAfter() throws Exception {
+        assertEquals(200, send(login("{\"email\":\"user@test.com\",\"password\":\"a\"}")).getStatus());
+        
+        MockHttpServletResponse rejected = send(login("{\"email\":\"User@Test.com\",\"password\":\"b\"}"));
+        assertEquals(429, rejected.getStatus());
+        assertNotNull(rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(Long.parseLong(rejected.getHeader(HttpHeaders.RETRY_AFTER)) >= 1);
+    }
+    
+    @Test
+    void loginBodiesOverTheCapAreRejectedEvenWithoutContentLength() throws Exception {
+        // A chunked body has no Content-Length
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.addHeader(HttpHeaders.TRANSFER_ENCODING, "chunked");
+        request.setContent(("{\"email\":\"user@test.com\",\"password\":\"" + "x".repeat(17 * 1024) + "\"}")
+            .getBytes(StandardCharsets.UTF_8));
+        
+        assertEquals(413, send(request).getStatus());
+    }
+}
@@ -0,0 +1,27 @@
+package com.pianomastr64.usermanagement.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+    
+    @Test
+    void tryConsume_allowsBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(3, 0.001);
+        
+        assertEquals(0, bucket.tryConsume());
+        assertEquals(0, bucket.tryConsume());
+        assertEquals(0, bucket.tryConsume());
+        assertTrue(bucket.tryConsume() > 0);
+    }
+    
+    @Test
+    void tryConsume_refillsOverTime() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 100);
+        
+        assertEquals(0, bucket.tryConsume());
+        Thread.sleep(50);
+        assertEquals(0, bucket.tryConsume());
+    }
+}
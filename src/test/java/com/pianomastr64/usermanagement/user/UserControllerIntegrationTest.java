@@ -1,24 +1,39 @@
 package com.pianomastr64.usermanagement.user;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.pianomastr64.usermanagement.security.JwtUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.RequestPostProcessor;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_CBOR;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -30,6 +45,7 @@ class UserControllerIntegrationTest {
     @Autowired PasswordEncoder encoder;
     @Autowired JwtUtil jwtUtil;
     @Autowired ObjectMapper mapper;
+    @Autowired UserSearchIndex searchIndex;
     
     private String adminToken;
     private String userToken;
@@ -42,6 +58,8 @@ class UserControllerIntegrationTest {
         repo.deleteAll();
         adminToken = saveAndLogin("TestAdmin", "admin@test.com", "aPwd", Role.ADMIN);
         userToken = saveAndLogin("TestUser", "user@test.com", "uPwd", Role.USER);
+        // Users saved straight through the repository aren't indexed for search
+        searchIndex.rebuild();
     }
     
     
@@ -147,4 +165,408 @@ class UserControllerIntegrationTest {
                 .content(mapper.writeValueAsString(users)))
             .andExpect(status().isCreated());
     }
-}
\ No newline at end of file
+    
+    @Test
+    void roleChangeTakesEffectOnNextRequest() throws Exception {
+        // Prime the principal cache with the USER role
+        mockMvc.perform(get("/users/me")
+                .with(bearer(userToken)))
+            .andExpect(status().isOk());
+        
+        mockMvc.perform(patch("/users/" + id(userToken))
+                .with(bearer(adminToken))
+                .contentType(APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Map.of("role", "ADMIN"))))
+            .andExpect(status().isOk());
+        
+        mockMvc.perform(post("/users")
+                .with(bearer(userToken))
+                .contentType(APPLICATION_JSON)
+                .content(mapper.writeValueAsString(NEW_USER_INPUT)))
+            .andExpect(status().isCreated());
+    }
+    
+    @Test
+    void adminCanPageThroughUsersByName() throws Exception {
+        // TestAdmin, TestUser
+        MvcResult first = mockMvc.perform(get("/users")
+                .param("sort", "name")
+                .param("limit", "1")
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.users[0].name").value("TestAdmin"))
+            .andReturn();
+        String cursor = mapper.readTree(first.getResponse().getContentAsString()).get("nextCursor").asText();
+        
+        mockMvc.perform(get("/users")
+                .param("sort", "name")
+                .param("limit", "1")
+                .param("after", cursor)
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.users[0].name").value("TestUser"))
+            .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+    
+    @Test
+    void cursorFromAnotherSortIsRejected() throws Exception {
+        MvcResult first = mockMvc.perform(get("/users")
+                .param("limit", "1")
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andReturn();
+        String cursor = mapper.readTree(first.getResponse().getContentAsString()).get("nextCursor").asText();
+        
+        mockMvc.perform(get("/users")
+                .param("sort", "email")
+                .param("after", cursor)
+                .with(bearer(adminToken)))
+            .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    void adminCanStreamAllUsersAsNdjson() throws Exception {
+        MvcResult started = mockMvc.perform(get("/users")
+                .with(bearer(adminToken))
+                .accept(APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        
+        String body = mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString();
+        
+        List<String> lines = body.lines().toList();
+        assertEquals(2, lines.size());
+        assertEquals("TestAdmin", mapper.readTree(lines.get(0)).get("name").asText());
+    }
+    
+    @Test
+    void adminCanExportUsersByRoleAsCsv() throws Exception {
+        MvcResult started = mockMvc.perform(get("/users/export")
+                .param("role", "user")
+                .with(bearer(adminToken)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        
+        String csv = mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("text/csv"))
+            .andReturn().getResponse().getContentAsString();
+        
+        assertEquals(
+            List.of("id,name,email,role", id(userToken) + ",TestUser,user@test.com,USER"),
+            csv.lines().toList());
+    }
+    
+    @Test
+    void exportedValuesDoNotOpenAsFormulas() throws Exception {
+        Long id = repo.save(new User("=1+2", "+evil@test.com", encoder.encode("ePwd"), Role.USER)).getId();
+        
+        MvcResult started = mockMvc.perform(get("/users/export")
+                .with(bearer(adminToken)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String csv = mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        
+        assertTrue(csv.lines().toList().contains(id + ",'=1+2,'+evil@test.com,USER"));
+    }
+    
+    @Test
+    void exportCanBeGzipped() throws Exception {
+        MvcResult started = mockMvc.perform(get("/users/export")
+                .param("gzip", "true")
+                .with(bearer(adminToken)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        
+        byte[] gzipped = mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Disposition", containsString("users.csv.gz")))
+            .andReturn().getResponse().getContentAsByteArray();
+        
+        try(InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            String csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(3, csv.lines().count());
+        }
+    }
+    
+    @Test
+    void adminCanSearchUsersByNameOrEmail() throws Exception {
+        mockMvc.perform(get("/users/search")
+                .param("q", "TESTU")
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.users.length()").value(1))
+            .andExpect(jsonPath("$.users[0].email").value("user@test.com"));
+    }
+    
+    @Test
+    void searchPagesWithTheSameOpaqueCursorAsTheListing() throws Exception {
+        String first = mockMvc.perform(get("/users/search")
+                .param("q", "test.com")
+                .param("limit", "1")
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.users[0].email").value("admin@test.com"))
+            .andReturn().getResponse().getContentAsString();
+        String cursor = mapper.readTree(first).get("nextCursor").asText();
+        
+        mockMvc.perform(get("/users/search")
+                .param("q", "test.com")
+                .param("limit", "1")
+                .param("after", cursor)
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.users[0].email").value("user@test.com"))
+            .andExpect(jsonPath("$.nextCursor").doesNotExist());
+        
+        // The id-sorted listing accepts it too
+        mockMvc.perform(get("/users")
+                .param("after", cursor)
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.users[0].email").value("user@test.com"));
+        
+        mockMvc.perform(get("/users/search")
+                .param("q", "test.com")
+                .param("after", "2")
+                .with(bearer(adminToken)))
+            .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    void searchRefusesQueriesTooShortForTheIndex() throws Exception {
+        mockMvc.perform(get("/users/search")
+                .param("q", "te")
+                .with(bearer(adminToken)))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/search")
+                .param("q", "  te  ")
+                .with(bearer(adminToken)))
+            .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    void adminCanDeleteUsersInBulk() throws Exception {
+        Long other = repo.save(new User("Other", "other@test.com", "hash", Role.USER)).getId();
+        
+        mockMvc.perform(delete("/users/bulk")
+                .contentType(APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Map.of("ids", List.of(id(userToken), other, -1L))))
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.affected").value(2));
+        
+        assertEquals(1, repo.count());
+    }
+    
+    @Test
+    void adminCanDeleteUsersInBulkByFilter() throws Exception {
+        // Cache the user before it's deleted
+        mockMvc.perform(get("/users/" + id(userToken))
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk());
+        
+        mockMvc.perform(delete("/users/bulk")
+                .contentType(APPLICATION_JSON)
+                .content("{\"role\": \"user\"}")
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.affected").value(1));
+        
+        mockMvc.perform(get("/users/" + id(userToken))
+                .with(bearer(adminToken)))
+            .andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/search")
+                .param("q", "TestUser")
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.users.length()").value(0));
+    }
+    
+    @Test
+    void adminCanChangeRolesInBulkByFilter() throws Exception {
+        // Prime the principal cache with the USER role
+        mockMvc.perform(get("/users/me")
+                .with(bearer(userToken)))
+            .andExpect(status().isOk());
+        
+        mockMvc.perform(patch("/users/bulk/role")
+                .contentType(APPLICATION_JSON)
+                .content("{\"users\": {\"role\": \"user\"}, \"role\": \"admin\"}")
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.affected").value(1));
+        
+        // The principal cache was invalidated, so the promoted user is an admin straight away
+        mockMvc.perform(get("/users")
+                .with(bearer(userToken)))
+            .andExpect(status().isOk());
+    }
+    
+    @Test
+    void bulkSelectorNeedsExactlyOneCriterion() throws Exception {
+        mockMvc.perform(delete("/users/bulk")
+                .contentType(APPLICATION_JSON)
+                .content("{\"ids\": [1], \"role\": \"user\"}")
+                .with(bearer(adminToken)))
+            .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    void userCannotDeleteInBulk() throws Exception {
+        mockMvc.perform(delete("/users/bulk")
+                .contentType(APPLICATION_JSON)
+                .content("{\"role\": \"admin\"}")
+                .with(bearer(userToken)))
+            .andExpect(status().isForbidden());
+    }
+    
+    @Test
+    void unchangedUserIsNotSentAgain() throws Exception {
+        String etag = mockMvc.perform(get("/users/me")
+                .with(bearer(userToken)))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn().getResponse().getHeader("ETag");
+        
+        mockMvc.perform(get("/users/me")
+                .header("If-None-Match", etag)
+                .with(bearer(userToken)))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+    }
+    
+    @Test
+    void staleIfMatchRejectsUpdate() throws Exception {
+        String path = "/users/" + id(userToken);
+        String etag = mockMvc.perform(get(path)
+                .with(bearer(userToken)))
+            .andReturn().getResponse().getHeader("ETag");
+        
+        String newEtag = mockMvc.perform(patch(path)
+                .header("If-Match", etag)
+                .contentType(APPLICATION_JSON)
+                .content("{\"name\": \"Renamed\"}")
+                .with(bearer(userToken)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, newEtag);
+        
+        mockMvc.perform(patch(path)
+                .header("If-Match", etag)
+                .contentType(APPLICATION_JSON)
+                .content("{\"name\": \"Lost\"}")
+                .with(bearer(userToken)))
+            .andExpect(status().isPreconditionFailed());
+    }
+    
+    @Test
+    void updatedUserIsReadBackRatherThanServedFromCache() throws Exception {
+        String path = "/users/" + id(userToken);
+        mockMvc.perform(get(path)
+                .with(bearer(adminToken)))
+            .andExpect(jsonPath("$.name").value("TestUser"));
+        
+        mockMvc.perform(patch(path)
+                .contentType(APPLICATION_JSON)
+                .content("{\"name\": \"Renamed\"}")
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk());
+        
+        mockMvc.perform(get(path)
+                .with(bearer(adminToken)))
+            .andExpect(jsonPath("$.name").value("Renamed"));
+    }
+    
+    @Test
+    void bulkCreateSpeaksSmile() throws Exception {
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+        MediaType smileType = MediaType.parseMediaType("application/x-jackson-smile");
+        
+        byte[] created = mockMvc.perform(post("/users/bulk")
+                .with(bearer(adminToken))
+                .contentType(smileType)
+                .accept(smileType)
+                .content(smile.writeValueAsBytes(List.of(NEW_USER_INPUT))))
+            .andExpect(status().isCreated())
+            .andExpect(content().contentType(smileType))
+            .andReturn().getResponse().getContentAsByteArray();
+        
+        assertEquals("new@user.com", smile.readTree(created).get(0).get("email").asText());
+    }
+    
+    @Test
+    void usersCanBeListedAsCbor() throws Exception {
+        byte[] page = mockMvc.perform(get("/users")
+                .with(bearer(adminToken))
+                .accept(APPLICATION_CBOR))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(APPLICATION_CBOR))
+            .andReturn().getResponse().getContentAsByteArray();
+        
+        assertEquals(2, new ObjectMapper(new CBORFactory()).readTree(page).get("users").size());
+    }
+    
+    @Test
+    void eachFormatHasItsOwnETag() throws Exception {
+        MockHttpServletResponse json = mockMvc.perform(get("/users/me")
+                .with(bearer(userToken)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse();
+        assertTrue(String.join(",", json.getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT));
+        
+        String cborEtag = mockMvc.perform(get("/users/me")
+                .with(bearer(userToken))
+                .accept(APPLICATION_CBOR))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(APPLICATION_CBOR))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(json.getHeader(HttpHeaders.ETAG), cborEtag);
+        
+        // A cached JSON body is no good to a client asking for CBOR
+        mockMvc.perform(get("/users/me")
+                .with(bearer(userToken))
+                .accept(APPLICATION_CBOR)
+                .header(HttpHeaders.IF_NONE_MATCH, json.getHeader(HttpHeaders.ETAG)))
+            .andExpect(status().isOk());
+        mockMvc.perform(get("/users/me")
+                .with(bearer(userToken))
+                .accept(APPLICATION_CBOR)
+                .header(HttpHeaders.IF_NONE_MATCH, cborEtag))
+            .andExpect(status().isNotModified());
+        
+        // Any format's tag is accepted as the version an update expects
+        mockMvc.perform(patch("/users/" + id(userToken))
+                .header(HttpHeaders.IF_MATCH, cborEtag)
+                .contentType(APPLICATION_JSON)
+                .content("{\"name\": \"Renamed\"}")
+                .with(bearer(userToken)))
+            .andExpect(status().isOk());
+    }
+    
+    @Test
+    void demotedAdminIsRefusedOnNextRequest() throws Exception {
+        String otherAdminToken = saveAndLogin("OtherAdmin", "other@test.com", "oPwd", Role.ADMIN);
+        // Prime the principal cache with the ADMIN role
+        mockMvc.perform(get("/users")
+                .with(bearer(otherAdminToken)))
+            .andExpect(status().isOk());
+        
+        mockMvc.perform(patch("/users/bulk/role")
+                .contentType(APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Map.of(
+                    "users", Map.of("ids", List.of(id(otherAdminToken))),
+                    "role", "user")))
+                .with(bearer(adminToken)))
+            .andExpect(status().isOk());
+        
+        mockMvc.perform(get("/users")
+                .with(bearer(otherAdminToken)))
+            .andExpect(status().isForbidden());
+    }
+}
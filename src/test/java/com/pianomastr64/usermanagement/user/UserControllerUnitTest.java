@@ -29,9 +29,9 @@ class UserControllerUnitTest {
     @BeforeEach
     void setup() {
         given(userService.getUser(1L))
-            .willReturn(Optional.of(new UserDTO(1L, "Admin", "admin@example.com", Role.ADMIN)));
+            .willReturn(Optional.of(new UserDTO(1L, "Admin", "admin@example.com", Role.ADMIN, 0)));
         given(userService.getUser(2L))
-            .willReturn(Optional.of(new UserDTO(2L, "User", "user@example.com", Role.USER)));
+            .willReturn(Optional.of(new UserDTO(2L, "User", "user@example.com", Role.USER, 0)));
     }
     
     @Test
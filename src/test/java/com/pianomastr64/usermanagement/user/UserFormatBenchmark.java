@@ -0,0 +1,106 @@
+package com.pianomastr64.usermanagement.user;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the response formats on a {@code GET /users} page of 500 users and a {@code POST /users/bulk} body of
+ * 500 users: bytes on the wire, and time to write and read each payload.
+ *
+ * <p>Not a test. Run it with</p>
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.pianomastr64.usermanagement.user.UserFormatBenchmark
+ * </pre>
+ */
+public class UserFormatBenchmark {
+    private static final int USERS = 500;
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 5_000;
+    
+    private static final TypeReference<UserPage> PAGE = new TypeReference<>() {};
+    private static final TypeReference<List<UserInputDTO>> INPUTS = new TypeReference<>() {};
+    
+    public static void main(String[] args) {
+        UserPage page = new UserPage(
+            IntStream.range(0, USERS)
+                .mapToObj(i -> new UserDTO((long) i, "User " + i, "user" + i + "@example.com", Role.USER, 0))
+                .toList(),
+            "eyJpZCI6NTAwfQ");
+        List<UserInputDTO> inputs = IntStream.range(0, USERS)
+            .mapToObj(i -> new UserInputDTO("User " + i, "user" + i + "@example.com", "password" + i, "USER"))
+            .toList();
+        
+        Map<String, Format> formats = new LinkedHashMap<>();
+        formats.put("JSON", new Format(new ObjectMapper(), false));
+        formats.put("JSON + gzip", new Format(new ObjectMapper(), true));
+        formats.put("Smile", new Format(new ObjectMapper(new SmileFactory()), false));
+        formats.put("CBOR", new Format(new ObjectMapper(new CBORFactory()), false));
+        
+        System.out.printf("%-12s %12s %12s %12s %12s %12s %12s%n",
+            "format", "page bytes", "write µs", "read µs", "bulk bytes", "write µs", "read µs");
+        formats.forEach((name, format) -> System.out.printf("%-12s %s %s%n",
+            name, measure(format, page, PAGE), measure(format, inputs, INPUTS)));
+    }
+    
+    private static <T> String measure(Format format, T payload, TypeReference<T> type) {
+        byte[] bytes = format.write(payload);
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            format.read(format.write(payload), type);
+        }
+        
+        long start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++) {
+            format.write(payload);
+        }
+        long writeNanos = (System.nanoTime() - start) / ITERATIONS;
+        
+        start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++) {
+            format.read(bytes, type);
+        }
+        long readNanos = (System.nanoTime() - start) / ITERATIONS;
+        
+        return String.format("%12d %12.1f %12.1f", bytes.length, writeNanos / 1_000.0, readNanos / 1_000.0);
+    }
+    
+    private record Format(ObjectMapper mapper, boolean gzip) {
+        byte[] write(Object payload) {
+            try {
+                if(!gzip) {
+                    return mapper.writeValueAsBytes(payload);
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try(GZIPOutputStream compressed = new GZIPOutputStream(out)) {
+                    mapper.writeValue(compressed, payload);
+                }
+                return out.toByteArray();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        <T> T read(byte[] bytes, TypeReference<T> type) {
+            try {
+                return gzip
+                    ? mapper.readValue(new GZIPInputStream(new ByteArrayInputStream(bytes)), type)
+                    : mapper.readValue(bytes, type);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -2,18 +2,27 @@ package com.pianomastr64.usermanagement.user;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceException;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 class UserPersistenceTest {
     @Autowired
     private EntityManager entityManager;
     
+    @Autowired
+    private UserRepository repo;
+    
     private User user;
     
     @BeforeEach
@@ -34,4 +43,53 @@ class UserPersistenceTest {
         user.setEmail(" ");
         assertThrows(PersistenceException.class, () -> entityManager.flush());
     }
-}
\ No newline at end of file
+    
+    @Test
+    void projectionsDoNotLoadManagedEntities() {
+        entityManager.clear();
+        
+        assertEquals(
+            new UserDTO(user.getId(), "User", "user@email.com", Role.USER, user.getVersion()),
+            repo.findDtoById(user.getId()).orElseThrow());
+        assertEquals(1, repo.findFirstPageOrderedByName(Limit.of(10)).size());
+        assertEquals(Role.USER, repo.findRoleById(user.getId()).orElseThrow());
+        
+        int managed = entityManager.unwrap(SessionImplementor.class)
+            .getPersistenceContext()
+            .getNumberOfManagedEntities();
+        assertEquals(0, managed);
+    }
+    
+    @Test
+    void insertsAreBatched() {
+        Statistics statistics = entityManager.getEntityManagerFactory()
+            .unwrap(SessionFactory.class)
+            .getStatistics();
+        statistics.clear();
+        
+        IntStream.range(0, 100)
+            .mapToObj(i -> new User("User" + i, "user" + i + "@batch.com", "hashedPassword", Role.USER))
+            .forEach(entityManager::persist);
+        entityManager.flush();
+        
+        assertEquals(100, statistics.getEntityInsertCount());
+        // Two 50-row insert batches and a couple of sequence calls, rather than a statement per row
+        assertTrue(statistics.getPrepareStatementCount() < 10,
+            "prepared " + statistics.getPrepareStatementCount() + " statements");
+    }
+    
+    @Test
+    void insertsOutsideHibernateDoNotCollideWithPooledIds() {
+        entityManager.createNativeQuery("""
+                INSERT INTO users (name, email, email_normalized, password_hash, role)
+                VALUES ('Outside', 'outside@email.com', 'outside@email.com', 'hashedPassword', 'USER')
+                """)
+            .executeUpdate();
+        
+        // Hibernate hands these out from the block it already reserved from users_seq
+        IntStream.range(0, 10)
+            .mapToObj(i -> new User("User" + i, "user" + i + "@pooled.com", "hashedPassword", Role.USER))
+            .forEach(entityManager::persist);
+        assertDoesNotThrow(() -> entityManager.flush());
+    }
+}
@@ -0,0 +1,78 @@
+package com.pianomastr64.usermanagement.user;
+
+import com.pianomastr64.usermanagement.UserManagementSystemApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Compares reading a {@code GET /users} page of 500 users, and a single user, straight into {@link UserDTO}
+ * projections with loading {@link User} entities and mapping them with {@link UserMapper}.
+ *
+ * <p>Runs against the in-memory database of the {@code test} profile, seeded with 10,000 users.
+ * Not a test. Run it with</p>
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.pianomastr64.usermanagement.user.UserProjectionBenchmark
+ * </pre>
+ */
+public class UserProjectionBenchmark {
+    private static final int USERS = 10_000;
+    private static final int PAGE_SIZE = 500;
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int ITERATIONS = 2_000;
+    
+    public static void main(String[] args) {
+        try(ConfigurableApplicationContext context = new SpringApplicationBuilder(UserManagementSystemApplication.class)
+            .web(WebApplicationType.NONE)
+            .profiles("test")
+            .run(args)) {
+            UserRepository repo = context.getBean(UserRepository.class);
+            UserMapper mapper = context.getBean(UserMapper.class);
+            TransactionTemplate readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            readOnly.setReadOnly(true);
+            
+            repo.deleteAll();
+            repo.saveAll(IntStream.range(0, USERS)
+                .mapToObj(i -> new User("User " + i, "user" + i + "@example.com", "hash", Role.USER))
+                .toList());
+            Long id = repo.findFirstPageOrderedById(Limit.of(1)).getFirst().id();
+            
+            System.out.printf("%-30s %12s%n", "", "µs/op");
+            report("page, projection", measure(readOnly,
+                () -> repo.findFirstPageOrderedById(Limit.of(PAGE_SIZE))));
+            report("page, entity + mapper", measure(readOnly,
+                () -> repo.findAll(PageRequest.of(0, PAGE_SIZE, Sort.by("id"))).map(mapper::toDTO).getContent()));
+            report("single user, projection", measure(readOnly,
+                () -> repo.findDtoById(id).stream().toList()));
+            report("single user, entity + mapper", measure(readOnly,
+                () -> repo.findById(id).map(mapper::toDTO).stream().toList()));
+        }
+    }
+    
+    // Each read runs in its own read-only transaction, as it does behind the service
+    private static long measure(TransactionTemplate transaction, Supplier<List<UserDTO>> read) {
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            transaction.execute(status -> read.get());
+        }
+        
+        long start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++) {
+            transaction.execute(status -> read.get());
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+    
+    private static void report(String name, long nanos) {
+        System.out.printf("%-30s %12.1f%n", name, nanos / 1_000.0);
+    }
+}
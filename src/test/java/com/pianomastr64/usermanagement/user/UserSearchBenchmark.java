@@ -0,0 +1,98 @@
+package com.pianomastr64.usermanagement.user;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Measures {@code GET /users/search} latency on an index of 1,000,000 synthetic users, for common, rare, prefix
+ * and too-short queries, next to a plain scan over the same names and emails.
+ *
+ * <p>Not a test. Run it with</p>
+ * <pre>
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.pianomastr64.usermanagement.user.UserSearchBenchmark
+ * </pre>
+ */
+public class UserSearchBenchmark {
+    private static final int USERS = 1_000_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 1_000;
+    
+    private static final String[] SYLLABLES = {
+        "an", "be", "ca", "do", "el", "fi", "ga", "ho", "is", "ju", "ka", "lo", "ma", "ni", "or", "pe", "qu", "ri",
+        "sa", "to", "ul", "vi", "wa", "xe", "yo", "za"
+    };
+    private static final String[] DOMAINS = {"example.com", "mail.test", "corp.internal", "users.org"};
+    
+    public static void main(String[] args) {
+        UserSearchIndex index = new UserSearchIndex(
+            mock(UserRepository.class), mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        List<String> texts = new ArrayList<>(USERS);
+        Random random = new Random(42);
+        
+        long start = System.nanoTime();
+        for(int i = 0; i < USERS; i++) {
+            String name = word(random) + " " + word(random);
+            String email = name.replace(' ', '.') + i + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            index.put((long) i, name, email);
+            texts.add((name + '\n' + email).toLowerCase(Locale.ROOT));
+        }
+        System.out.printf("Indexed %,d users in %,d ms%n%n", USERS, (System.nanoTime() - start) / 1_000_000);
+        
+        System.out.printf("%-34s %12s %12s%n", "query", "index µs", "scan µs");
+        report("common: \"example\"", index, texts, "example", false);
+        report("rare: \"xeyoza\"", index, texts, "xeyoza", false);
+        report("absent: \"qqq\"", index, texts, "qqq", false);
+        report("prefix: \"doma\"", index, texts, "doma", true);
+        report("single user: \"999999@\"", index, texts, "999999@", false);
+        // Under three characters there are no trigrams, so the index scans like the baseline
+        report("short, common: \"an\"", index, texts, "an", false);
+        report("short, rare: \"9@\"", index, texts, "9@", false);
+    }
+    
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        for(int i = 2 + random.nextInt(2); i > 0; i--) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+    
+    private static void report(String name, UserSearchIndex index, List<String> texts, String query, boolean prefix) {
+        double indexMicros = measure(() -> index.search(query, prefix, null, PAGE_SIZE));
+        double scanMicros = measure(() -> scan(texts, query, prefix));
+        System.out.printf("%-34s %12.1f %12.1f%n", name, indexMicros, scanMicros);
+    }
+    
+    private static List<Long> scan(List<String> texts, String query, boolean prefix) {
+        List<Long> found = new ArrayList<>();
+        for(int i = 0; i < texts.size() && found.size() < PAGE_SIZE; i++) {
+            String text = texts.get(i);
+            if(prefix ? text.startsWith(query) || text.contains('\n' + query) : text.contains(query)) {
+                found.add((long) i);
+            }
+        }
+        return found;
+    }
+    
+    private static double measure(Runnable search) {
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            search.run();
+        }
+        
+        long start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++) {
+            search.run();
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS / 1_000.0;
+    }
+}
@@ -0,0 +1,55 @@
+package com.pianomastr64.usermanagement.user;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class UserSearchIndexTest {
+    
+    private UserSearchIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new UserSearchIndex(mock(UserRepository.class), mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        index.put(1L, "Alice Smith", "alice@example.com");
+        index.put(2L, "Bob Alison", "bob@example.com");
+        index.put(3L, "Carol", "carol.ali@test.org");
+    }
+    
+    @Test
+    void substringMatchesNameOrEmailIgnoringCase() {
+        assertEquals(List.of(1L, 2L, 3L), index.search("ALI", false, null, 10));
+        assertEquals(List.of(3L), index.search("test.org", false, null, 10));
+    }
+    
+    @Test
+    void prefixOnlyMatchesStartOfNameOrEmail() {
+        assertEquals(List.of(1L), index.search("ali", true, null, 10));
+        assertEquals(List.of(2L), index.search("bob@", true, null, 10));
+    }
+    
+    @Test
+    void shortQueriesAreSupported() {
+        assertEquals(List.of(1L, 2L, 3L), index.search("a", false, null, 10));
+    }
+    
+    @Test
+    void pagesInIdOrder() {
+        assertEquals(List.of(1L, 2L), index.search("ali", false, null, 2));
+        assertEquals(List.of(3L), index.search("ali", false, 2L, 2));
+    }
+    
+    @Test
+    void updatesAndRemovalsAreReflected() {
+        index.put(2L, "Bob Brown", "bob@example.com");
+        index.remove(3L);
+        
+        assertEquals(List.of(1L), index.search("ali", false, null, 10));
+    }
+}
@@ -0,0 +1,100 @@
+package com.pianomastr64.usermanagement.user;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Not @Transactional: every step commits, as it would in production, so the cache sees completed transactions
+@SpringBootTest
+@ActiveProfiles("test")
+class UserSecondLevelCacheTest {
+    
+    @Autowired UserRepository repo;
+    @Autowired EntityManagerFactory entityManagerFactory;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired JdbcTemplate jdbcTemplate;
+    
+    private Cache cache;
+    private Long id;
+    
+    @BeforeEach
+    void setUp() {
+        repo.deleteAll();
+        cache = entityManagerFactory.getCache();
+        cache.evictAll();
+        
+        id = repo.save(new User("User", "user@cache.com", "oldHash", Role.USER)).getId();
+        repo.findById(id).orElseThrow();
+        assertTrue(cache.contains(User.class, id));
+    }
+    
+    @Test
+    void updatesReplaceTheCachedUser() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User user = repo.findById(id).orElseThrow();
+            user.setName("Renamed");
+            user.setEmail("renamed@cache.com");
+        });
+        
+        assertEquals("Renamed", repo.findById(id).orElseThrow().getName());
+        assertTrue(repo.findByEmail("user@cache.com").isEmpty());
+        assertEquals(id, repo.findByEmail("renamed@cache.com").orElseThrow().getId());
+    }
+    
+    @Test
+    void deletesEvictTheUser() {
+        repo.deleteById(id);
+        
+        // A READ_WRITE delete leaves a soft lock under the id until it times out, so the cache still
+        // contains the key; what matters is that it no longer serves the user
+        assertTrue(repo.findById(id).isEmpty());
+        assertTrue(repo.findByEmail("user@cache.com").isEmpty());
+    }
+    
+    @Test
+    void bulkDeletesEvictTheUser() {
+        assertEquals(1, repo.deleteAllByIdIn(List.of(id)));
+        
+        assertFalse(cache.contains(User.class, id));
+        assertTrue(repo.findById(id).isEmpty());
+        assertTrue(repo.findByEmail("user@cache.com").isEmpty());
+    }
+    
+    @Test
+    void bulkUpdatesEvictTheUser() {
+        assertEquals(1, repo.updateRoleByIdIn(List.of(id), Role.ADMIN));
+        
+        assertFalse(cache.contains(User.class, id));
+        assertEquals(Role.ADMIN, repo.findById(id).orElseThrow().getRole());
+    }
+    
+    @Test
+    void credentialsAreNotReadFromTheCache() {
+        // As another instance would, behind this instance's cache; its update bumps the version too
+        jdbcTemplate.update("UPDATE users SET password_hash = 'newHash', version = version + 1 WHERE id = ?", id);
+        
+        assertEquals("oldHash", repo.findById(id).orElseThrow().getPasswordHash());
+        assertEquals("newHash", repo.findCredentialsByEmail("user@cache.com").orElseThrow().getPasswordHash());
+        // The newer version read by the lookup replaced the cached copy
+        assertEquals("newHash", repo.findById(id).orElseThrow().getPasswordHash());
+    }
+    
+    @Test
+    void deletedUsersCredentialsAreNotFoundWhileStillCached() {
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", id);
+        
+        assertTrue(cache.contains(User.class, id));
+        assertTrue(repo.findCredentialsByEmail("user@cache.com").isEmpty());
+    }
+}
@@ -0,0 +1,149 @@
+package com.pianomastr64.usermanagement.user.importing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pianomastr64.usermanagement.user.Role;
+import com.pianomastr64.usermanagement.user.User;
+import com.pianomastr64.usermanagement.user.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "user-import.chunk-size=2")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserImportIntegrationTest {
+    
+    @Autowired MockMvc mockMvc;
+    @Autowired UserRepository repo;
+    @Autowired PasswordEncoder encoder;
+    @Autowired ObjectMapper mapper;
+    @Autowired JdbcTemplate jdbcTemplate;
+    
+    private String adminToken;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        repo.deleteAll();
+        repo.save(new User("TestAdmin", "admin@test.com", encoder.encode("aPwd"), Role.ADMIN));
+        
+        String response = mockMvc.perform(post("/auth/login")
+                .contentType(APPLICATION_JSON)
+                .content(mapper.writeValueAsString(Map.of("email", "admin@test.com", "password", "aPwd"))))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        adminToken = mapper.readTree(response).get("token").asText();
+    }
+    
+    private RequestPostProcessor bearer(String token) {
+        return req -> {
+            req.addHeader("Authorization", "Bearer " + token);
+            return req;
+        };
+    }
+    
+    private JsonNode awaitFinished(String jobId) throws Exception {
+        for(int attempt = 0; attempt < 100; attempt++) {
+            String response = mockMvc.perform(get("/users/import/" + jobId)
+                    .with(bearer(adminToken)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+            JsonNode job = mapper.readTree(response);
+            if(job.get("finishedAt") != null && !job.get("finishedAt").isNull()) {
+                return job;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Import " + jobId + " did not finish");
+    }
+    
+    @Test
+    void csvImportSkipsBadRowsAndImportsTheRest() throws Exception {
+        String csv = """
+            email,name,password,role
+            one@import.com,One,password1,USER
+            "two@import.com","Two, Jr.",password2,ADMIN
+            not-an-email,Three,password3,USER
+            admin@test.com,Dup,password4,USER
+            five@import.com,Five,password5,user
+            """;
+        
+        String response = mockMvc.perform(post("/users/import")
+                .with(bearer(adminToken))
+                .contentType("text/csv")
+                .content(csv))
+            .andExpect(status().isAccepted())
+            .andReturn().getResponse().getContentAsString();
+        
+        JsonNode job = awaitFinished(mapper.readTree(response).get("id").asText());
+        assertEquals("COMPLETED", job.get("status").asText());
+        assertEquals(3, job.get("imported").asLong());
+        assertEquals(2, job.get("failed").asLong());
+        assertEquals(4, job.get("errors").get(0).get("line").asLong());
+        assertEquals(5, job.get("errors").get(1).get("line").asLong());
+        assertEquals("Two, Jr.", repo.findByEmail("two@import.com").orElseThrow().getName());
+    }
+    
+    @Test
+    void chunkThatFailsToSaveOnlyReportsItsBadRows() throws Exception {
+        // Inserted behind the service, so the email filter doesn't know it is taken and the chunk insert fails
+        jdbcTemplate.update("""
+            INSERT INTO users (name, email, email_normalized, password_hash, role)
+            VALUES ('Elsewhere', 'taken@import.com', 'taken@import.com', 'hash', 'USER')
+            """);
+        String csv = """
+            email,name,password,role
+            one@import.com,One,password1,USER
+            taken@import.com,Taken,password2,USER
+            """;
+        
+        String response = mockMvc.perform(post("/users/import")
+                .with(bearer(adminToken))
+                .contentType("text/csv")
+                .content(csv))
+            .andExpect(status().isAccepted())
+            .andReturn().getResponse().getContentAsString();
+        
+        JsonNode job = awaitFinished(mapper.readTree(response).get("id").asText());
+        assertEquals(1, job.get("imported").asLong());
+        assertEquals(1, job.get("failed").asLong());
+        assertEquals(3, job.get("errors").get(0).get("line").asLong());
+        assertTrue(repo.findByEmail("one@import.com").isPresent());
+    }
+    
+    @Test
+    void ndjsonImportReportsMalformedLines() throws Exception {
+        String ndjson = """
+            {"name":"One","email":"one@import.com","password":"password1","role":"USER"}
+            {"name":"Two",
+            """;
+        
+        String response = mockMvc.perform(post("/users/import")
+                .with(bearer(adminToken))
+                .contentType(APPLICATION_NDJSON)
+                .content(ndjson))
+            .andExpect(status().isAccepted())
+            .andReturn().getResponse().getContentAsString();
+        
+        JsonNode job = awaitFinished(mapper.readTree(response).get("id").asText());
+        assertEquals(1, job.get("imported").asLong());
+        assertTrue(job.get("errors").get(0).get("message").asText().startsWith("Malformed JSON"));
+    }
+}